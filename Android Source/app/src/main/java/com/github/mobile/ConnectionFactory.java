@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Transport used by {@link DefaultClient} to open connections to the GitHub
+ * API
+ */
+public interface ConnectionFactory {
+
+    /**
+     * Factory that opens connections through {@link URL#openConnection()}
+     */
+    ConnectionFactory DEFAULT = new ConnectionFactory() {
+
+        @Override
+        public HttpURLConnection create(URL url) throws IOException {
+            return (HttpURLConnection) url.openConnection();
+        }
+    };
+
+    /**
+     * Open connection to given URL
+     *
+     * @param url
+     * @return connection
+     * @throws IOException
+     */
+    HttpURLConnection create(URL url) throws IOException;
+}
@@ -20,7 +20,9 @@ import static android.os.Build.VERSION_CODES.FROYO;
 
 import com.github.kevinsawicki.http.HttpRequest;
 
+import java.io.IOException;
 import java.net.HttpURLConnection;
+import java.net.URL;
 
 import org.eclipse.egit.github.core.client.GitHubClient;
 
@@ -31,28 +33,56 @@ public class DefaultClient extends GitHubClient {
 
     private static final String USER_AGENT = "GitHubAndroid/1.6";
 
+    private static final String HEADER_CACHE_CONTROL = "Cache-Control";
+
+    /**
+     * Cache directive forcing cached responses to be revalidated with the
+     * server through a conditional request before being used
+     */
+    private static final String REVALIDATE = "max-age=0";
+
     static {
         // Disable http.keepAlive on Froyo and below
         if (SDK_INT <= FROYO)
             HttpRequest.keepAlive(false);
     }
 
+    private final ConnectionFactory connectionFactory;
+
     /**
-     * Create client
+     * Create client using the shared pooled transport
      */
     public DefaultClient() {
+        this(OkHttpConnectionFactory.getDefault());
+    }
+
+    /**
+     * Create client using given transport
+     *
+     * @param connectionFactory
+     */
+    public DefaultClient(final ConnectionFactory connectionFactory) {
         super();
 
+        this.connectionFactory = connectionFactory;
+
         setSerializeNulls(false);
         setUserAgent(USER_AGENT);
     }
 
+    @Override
+    protected HttpURLConnection createConnection(String uri)
+            throws IOException {
+        return connectionFactory.create(new URL(createUri(uri)));
+    }
+
     @Override
     protected HttpURLConnection configureRequest(HttpURLConnection request) {
         super.configureRequest(request);
 
         request.setRequestProperty(HEADER_ACCEPT,
                 "application/vnd.github.beta.full+json");
+        request.setRequestProperty(HEADER_CACHE_CONTROL, REVALIDATE);
 
         return request;
     }
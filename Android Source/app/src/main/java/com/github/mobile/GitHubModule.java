@@ -15,7 +15,10 @@
  */
 package com.github.mobile;
 
+import static android.content.Context.ACTIVITY_SERVICE;
+import android.app.ActivityManager;
 import android.content.Context;
+import android.util.Log;
 
 import com.github.mobile.accounts.AccountClient;
 import com.github.mobile.accounts.AccountScope;
@@ -23,16 +26,19 @@ import com.github.mobile.accounts.GitHubAccount;
 import com.github.mobile.core.commit.CommitStore;
 import com.github.mobile.core.gist.GistStore;
 import com.github.mobile.core.issue.IssueStore;
+import com.github.mobile.persistence.ItemCache;
+import com.github.mobile.persistence.MarkdownCache;
 import com.github.mobile.persistence.OrganizationRepositories;
 import com.github.mobile.sync.SyncCampaign;
 import com.google.inject.AbstractModule;
 import com.google.inject.Provider;
 import com.google.inject.Provides;
+import com.google.inject.Singleton;
 import com.google.inject.assistedinject.FactoryModuleBuilder;
 import com.google.inject.name.Named;
 
 import java.io.File;
-import java.lang.ref.WeakReference;
+import java.io.IOException;
 
 import org.eclipse.egit.github.core.client.GitHubClient;
 import org.eclipse.egit.github.core.service.CommitService;
@@ -45,11 +51,34 @@ import org.eclipse.egit.github.core.service.PullRequestService;
  */
 public class GitHubModule extends AbstractModule {
 
-    private WeakReference<IssueStore> issues;
+    private static final String TAG = "GitHubModule";
 
-    private WeakReference<GistStore> gists;
+    /**
+     * Maximum size in bytes of the HTTP response cache
+     */
+    private static final long HTTP_CACHE_SIZE = 10 * 1024 * 1024;
 
-    private WeakReference<CommitStore> commits;
+    /**
+     * Maximum size in bytes of the cache of refreshed issues, commits and
+     * gists
+     */
+    private static final long ITEM_CACHE_SIZE = 5 * 1024 * 1024;
+
+    /**
+     * Maximum size in bytes of the cache of rendered markdown
+     */
+    private static final long MARKDOWN_CACHE_SIZE = 2 * 1024 * 1024;
+
+    /**
+     * Fraction of the application's memory class used for encoded markdown
+     */
+    private static final int MARKDOWN_MEMORY_DIVIDER = 16;
+
+    private IssueStore issues;
+
+    private GistStore gists;
+
+    private CommitStore commits;
 
     @Override
     protected void configure() {
@@ -61,8 +90,20 @@ public class GitHubModule extends AbstractModule {
     }
 
     @Provides
-    GitHubClient client(Provider<GitHubAccount> accountProvider) {
-        return new AccountClient(accountProvider);
+    ConnectionFactory connectionFactory(@Named("cacheDir") File cacheDir) {
+        OkHttpConnectionFactory factory = OkHttpConnectionFactory.getDefault();
+        try {
+            factory.enableCache(new File(cacheDir, "http"), HTTP_CACHE_SIZE);
+        } catch (IOException e) {
+            Log.d(TAG, "Exception opening HTTP response cache", e);
+        }
+        return factory;
+    }
+
+    @Provides
+    GitHubClient client(Provider<GitHubAccount> accountProvider,
+            ConnectionFactory connectionFactory) {
+        return new AccountClient(accountProvider, connectionFactory);
     }
 
     @Provides
@@ -72,33 +113,43 @@ public class GitHubModule extends AbstractModule {
     }
 
     @Provides
-    IssueStore issueStore(IssueService issueService,
-            PullRequestService pullService) {
-        IssueStore store = issues != null ? issues.get() : null;
-        if (store == null) {
-            store = new IssueStore(issueService, pullService);
-            issues = new WeakReference<IssueStore>(store);
-        }
-        return store;
+    @Singleton
+    ItemCache itemCache(@Named("cacheDir") File cacheDir, Context context) {
+        return new ItemCache(new File(cacheDir, "items"), ITEM_CACHE_SIZE,
+                context.getApplicationContext());
     }
 
     @Provides
-    GistStore gistStore(GistService service) {
-        GistStore store = gists != null ? gists.get() : null;
-        if (store == null) {
-            store = new GistStore(service);
-            gists = new WeakReference<GistStore>(store);
-        }
-        return store;
+    @Singleton
+    MarkdownCache markdownCache(@Named("cacheDir") File cacheDir,
+            Context context) {
+        ActivityManager manager = (ActivityManager) context
+                .getSystemService(ACTIVITY_SERVICE);
+        return new MarkdownCache(new File(cacheDir, "markdown"),
+                MARKDOWN_CACHE_SIZE, manager.getMemoryClass() * 1024 * 1024
+                        / MARKDOWN_MEMORY_DIVIDER);
     }
 
     @Provides
-    CommitStore commitStore(CommitService service) {
-        CommitStore store = commits != null ? commits.get() : null;
-        if (store == null) {
-            store = new CommitStore(service);
-            commits = new WeakReference<CommitStore>(store);
-        }
-        return store;
+    synchronized IssueStore issueStore(IssueService issueService,
+            PullRequestService pullService, ItemCache cache) {
+        if (issues == null)
+            issues = new IssueStore(issueService, pullService, cache);
+        return issues;
+    }
+
+    @Provides
+    synchronized GistStore gistStore(GistService service, ItemCache cache) {
+        if (gists == null)
+            gists = new GistStore(service, cache);
+        return gists;
+    }
+
+    @Provides
+    synchronized CommitStore commitStore(CommitService service,
+            ItemCache cache) {
+        if (commits == null)
+            commits = new CommitStore(service, cache);
+        return commits;
     }
 }
@@ -313,6 +313,18 @@ public class Intents {
             return this;
         }
 
+        /**
+         * Add extra field data value to intent being built up
+         *
+         * @param fieldName
+         * @param value
+         * @return this builder
+         */
+        public Builder add(String fieldName, long value) {
+            intent.putExtra(fieldName, value);
+            return this;
+        }
+
         /**
          * Add extra field data value to intent being built up
          *
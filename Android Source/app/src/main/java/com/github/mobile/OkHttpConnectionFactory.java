@@ -0,0 +1,210 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import com.squareup.okhttp.Cache;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.OkUrlFactory;
+import com.squareup.okhttp.Protocol;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * {@link ConnectionFactory} backed by a single shared {@link OkHttpClient}
+ * <p>
+ * Connections are pooled and kept alive between requests and HTTP/2 or SPDY
+ * is negotiated when the server supports it so paging through resources does
+ * not pay for a new TLS handshake on every request. Responses are
+ * transparently requested and decoded as gzip.
+ * <p>
+ * Once {@link #enableCache(File, long)} is called responses are stored on disk
+ * along with their ETag and Last-Modified validators. Since
+ * {@link DefaultClient} marks every request as requiring revalidation this
+ * turns unchanged resources into 304 responses served from the stored body,
+ * which do not count against the GitHub rate limit.
+ * <p>
+ * Connections opened by a thread after {@link #setRequestTag(Object)} are
+ * tracked under the tag so {@link #cancel(Object)} can abort requests blocked
+ * on a read from another thread.
+ */
+public class OkHttpConnectionFactory implements ConnectionFactory {
+
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+
+    private static final long KEEP_ALIVE_DURATION = 5 * 60 * 1000;
+
+    private static final long CONNECT_TIMEOUT = 15;
+
+    private static final long READ_TIMEOUT = 30;
+
+    private static final ThreadLocal<Object> REQUEST_TAG = new ThreadLocal<Object>();
+
+    private static OkHttpConnectionFactory instance;
+
+    /**
+     * Set tag of the connections opened by the current thread
+     *
+     * @param tag
+     *            may be null to stop tagging connections
+     */
+    public static void setRequestTag(final Object tag) {
+        if (tag != null)
+            REQUEST_TAG.set(tag);
+        else
+            REQUEST_TAG.remove();
+    }
+
+    /**
+     * Get factory shared by all clients in this process
+     *
+     * @return factory
+     */
+    public static synchronized OkHttpConnectionFactory getDefault() {
+        if (instance == null) {
+            OkHttpClient client = new OkHttpClient();
+            client.setConnectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS,
+                    KEEP_ALIVE_DURATION));
+            client.setProtocols(Arrays.asList(Protocol.HTTP_2,
+                    Protocol.SPDY_3, Protocol.HTTP_1_1));
+            client.setConnectTimeout(CONNECT_TIMEOUT, SECONDS);
+            client.setReadTimeout(READ_TIMEOUT, SECONDS);
+            instance = new OkHttpConnectionFactory(client);
+        }
+        return instance;
+    }
+
+    private final OkHttpClient client;
+
+    private final OkUrlFactory urlFactory;
+
+    /**
+     * Connections by tag, released connections are not held on to
+     */
+    private final Map<Object, Set<HttpURLConnection>> tagged = new HashMap<Object, Set<HttpURLConnection>>();
+
+    /**
+     * Create factory opening connections with given client
+     *
+     * @param client
+     */
+    public OkHttpConnectionFactory(final OkHttpClient client) {
+        this.client = client;
+        urlFactory = new OkUrlFactory(client);
+    }
+
+    /**
+     * @return client
+     */
+    public OkHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Enable the size-bounded response cache in given directory
+     * <p>
+     * This method is a no-op if a cache was already enabled
+     *
+     * @param directory
+     * @param maxSize
+     *            maximum size in bytes before least recently used responses
+     *            are evicted
+     * @throws IOException
+     */
+    public synchronized void enableCache(final File directory,
+            final long maxSize) throws IOException {
+        if (client.getCache() == null)
+            client.setCache(new Cache(directory, maxSize));
+    }
+
+    /**
+     * Get response cache
+     * <p>
+     * The returned cache exposes request, network and hit counters
+     *
+     * @return cache or null if not enabled
+     */
+    public Cache getCache() {
+        return client.getCache();
+    }
+
+    /**
+     * Disconnect all connections opened with the given tag
+     * <p>
+     * Requests in flight fail with an {@link IOException}
+     *
+     * @param tag
+     */
+    public void cancel(final Object tag) {
+        Set<HttpURLConnection> connections;
+        synchronized (tagged) {
+            connections = tagged.remove(tag);
+        }
+        if (connections == null)
+            return;
+        HttpURLConnection[] open;
+        synchronized (connections) {
+            open = connections.toArray(new HttpURLConnection[connections
+                    .size()]);
+        }
+        for (HttpURLConnection connection : open)
+            connection.disconnect();
+    }
+
+    /**
+     * Stop tracking connections opened with the given tag without
+     * disconnecting them
+     *
+     * @param tag
+     */
+    public void release(final Object tag) {
+        synchronized (tagged) {
+            tagged.remove(tag);
+        }
+    }
+
+    @Override
+    public HttpURLConnection create(URL url) throws IOException {
+        HttpURLConnection connection = urlFactory.open(url);
+        Object tag = REQUEST_TAG.get();
+        if (tag != null) {
+            Set<HttpURLConnection> connections;
+            synchronized (tagged) {
+                connections = tagged.get(tag);
+                if (connections == null) {
+                    connections = Collections
+                            .newSetFromMap(new WeakHashMap<HttpURLConnection, Boolean>());
+                    tagged.put(tag, connections);
+                }
+            }
+            synchronized (connections) {
+                connections.add(connection);
+            }
+        }
+        return connection;
+    }
+}
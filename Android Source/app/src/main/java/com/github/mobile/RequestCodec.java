@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.lang.reflect.Type;
+
+import org.eclipse.egit.github.core.client.GsonUtils;
+
+/**
+ * Codec of the data written by {@link RequestWriter} and read by
+ * {@link RequestReader}
+ */
+public abstract class RequestCodec {
+
+    /**
+     * Create codec that streams data as JSON
+     *
+     * @param type
+     *            type of the data, a parameterized type for collections
+     * @return codec
+     */
+    public static RequestCodec json(final Type type) {
+        return new RequestCodec() {
+
+            @Override
+            public Object read(final InputStream input) throws IOException {
+                JsonReader reader = new JsonReader(new InputStreamReader(
+                        input, "UTF-8"));
+                try {
+                    return GsonUtils.getGson().fromJson(reader, type);
+                } catch (JsonParseException e) {
+                    throw new IOException(e.getMessage());
+                }
+            }
+
+            @Override
+            public void write(final Object data, final OutputStream output)
+                    throws IOException {
+                JsonWriter writer = new JsonWriter(new OutputStreamWriter(
+                        output, "UTF-8"));
+                try {
+                    GsonUtils.getGson().toJson(data, type, writer);
+                } catch (JsonParseException e) {
+                    throw new IOException(e.getMessage());
+                }
+                writer.flush();
+            }
+        };
+    }
+
+    /**
+     * Create codec that uses Java serialization
+     *
+     * @return codec
+     */
+    public static RequestCodec serialized() {
+        return new RequestCodec() {
+
+            @Override
+            public Object read(final InputStream input) throws IOException {
+                try {
+                    return new ObjectInputStream(input).readObject();
+                } catch (ClassNotFoundException e) {
+                    throw new IOException(e.getMessage());
+                }
+            }
+
+            @Override
+            public void write(final Object data, final OutputStream output)
+                    throws IOException {
+                ObjectOutputStream stream = new ObjectOutputStream(output);
+                stream.writeObject(data);
+                stream.flush();
+            }
+        };
+    }
+
+    /**
+     * Read data from stream
+     *
+     * @param input
+     * @return data
+     * @throws IOException
+     */
+    public abstract Object read(InputStream input) throws IOException;
+
+    /**
+     * Write data to stream
+     *
+     * @param data
+     * @param output
+     * @throws IOException
+     */
+    public abstract void write(Object data, OutputStream output)
+            throws IOException;
+}
@@ -15,36 +15,61 @@
  */
 package com.github.mobile;
 
+import static com.github.mobile.RequestWriter.MAGIC;
 import android.util.Log;
 
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.RandomAccessFile;
 import java.nio.channels.FileLock;
 import java.util.zip.GZIPInputStream;
 
 /**
  * Reader of previously fetched request data
+ * <p>
+ * Files written with Java serialization by previous versions are still read
+ * and are rewritten using this reader's codec.
  */
 public class RequestReader {
 
     private static final String TAG = "RequestReader";
 
+    /**
+     * First two bytes of the GZIP stream of files written by previous versions
+     */
+    private static final int LEGACY_MAGIC = 0x1f8b;
+
     private final File handle;
 
     private final int version;
 
+    private final RequestCodec codec;
+
     /**
-     * Create request reader
+     * Create request reader of data written using Java serialization
      *
      * @param file
      * @param formatVersion
      */
     public RequestReader(File file, int formatVersion) {
+        this(file, formatVersion, RequestCodec.serialized());
+    }
+
+    /**
+     * Create request reader
+     *
+     * @param file
+     * @param formatVersion
+     * @param codec
+     */
+    public RequestReader(File file, int formatVersion, RequestCodec codec) {
         handle = file;
         version = formatVersion;
+        this.codec = codec;
     }
 
     /**
@@ -57,52 +82,65 @@ public class RequestReader {
         if (!handle.exists() || handle.length() == 0)
             return null;
 
-        RandomAccessFile dir = null;
+        FileInputStream file = null;
         FileLock lock = null;
-        ObjectInputStream input = null;
         boolean delete = false;
+        boolean legacy = false;
+        Object data = null;
         try {
-            dir = new RandomAccessFile(handle, "rw");
-            lock = dir.getChannel().lock();
-            input = new ObjectInputStream(new GZIPInputStream(
-                    new FileInputStream(dir.getFD()), 8192 * 8));
-            int streamVersion = input.readInt();
-            if (streamVersion != version) {
-                delete = true;
-                return null;
+            file = new FileInputStream(handle);
+            // Shared so concurrent readers don't wait on each other
+            lock = file.getChannel().lock(0, Long.MAX_VALUE, true);
+            DataInputStream input = new DataInputStream(
+                    new BufferedInputStream(file, 8192));
+            input.mark(4);
+            if (input.readUnsignedShort() == LEGACY_MAGIC) {
+                input.reset();
+                legacy = true;
+                data = readLegacy(input);
+                delete = data == null;
+            } else {
+                input.reset();
+                if (input.readInt() != MAGIC || input.readInt() != version)
+                    delete = true;
+                else
+                    data = codec.read(input);
             }
-            return (V) input.readObject();
         } catch (IOException e) {
             Log.d(TAG, "Exception reading cache " + handle.getName(), e);
             return null;
-        } catch (ClassNotFoundException e) {
-            Log.d(TAG, "Exception reading cache " + handle.getName(), e);
-            return null;
         } finally {
-            if (input != null)
-                try {
-                    input.close();
-                } catch (IOException e) {
-                    Log.d(TAG, "Exception closing stream", e);
-                }
-            if (delete)
-                try {
-                    dir.setLength(0);
-                } catch (IOException e) {
-                    Log.d(TAG, "Exception truncating file", e);
-                }
             if (lock != null)
                 try {
                     lock.release();
                 } catch (IOException e) {
                     Log.d(TAG, "Exception unlocking file", e);
                 }
-            if (dir != null)
+            if (file != null)
                 try {
-                    dir.close();
+                    file.close();
                 } catch (IOException e) {
                     Log.d(TAG, "Exception closing file", e);
                 }
+            if (delete)
+                handle.delete();
+        }
+
+        if (legacy && data != null)
+            new RequestWriter(handle, version, codec).write(data);
+        return (V) data;
+    }
+
+    private Object readLegacy(final InputStream stream) throws IOException {
+        ObjectInputStream input = new ObjectInputStream(new GZIPInputStream(
+                stream, 8192 * 8));
+        if (input.readInt() != version)
+            return null;
+        try {
+            return input.readObject();
+        } catch (ClassNotFoundException e) {
+            Log.d(TAG, "Exception reading cache " + handle.getName(), e);
+            return null;
         }
     }
 }
@@ -17,34 +17,55 @@ package com.github.mobile;
 
 import android.util.Log;
 
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
-import java.io.RandomAccessFile;
-import java.nio.channels.FileLock;
-import java.util.zip.GZIPOutputStream;
 
 /**
  * Request writer
+ * <p>
+ * Data is written to a temporary file that then replaces the file so readers
+ * never see a partially written file.
  */
 public class RequestWriter {
 
     private static final String TAG = "RequestWriter";
 
+    /**
+     * Marker at the start of files written by this class
+     */
+    static final int MAGIC = 0x47484d31;
+
     private final File handle;
 
     private final int version;
 
+    private final RequestCodec codec;
+
     /**
-     * Create a request writer that writes to the given file
+     * Create a request writer that writes to the given file using Java
+     * serialization
      *
      * @param file
      * @param formatVersion
      */
     public RequestWriter(File file, int formatVersion) {
+        this(file, formatVersion, RequestCodec.serialized());
+    }
+
+    /**
+     * Create a request writer that writes to the given file
+     *
+     * @param file
+     * @param formatVersion
+     * @param codec
+     */
+    public RequestWriter(File file, int formatVersion, RequestCodec codec) {
         handle = file;
         version = formatVersion;
+        this.codec = codec;
     }
 
     private void createDirectory(final File dir) {
@@ -59,40 +80,42 @@ public class RequestWriter {
      * @return request
      */
     public <V> V write(V request) {
-        RandomAccessFile dir = null;
-        FileLock lock = null;
-        ObjectOutputStream output = null;
+        long start = System.currentTimeMillis();
+        File temp = null;
+        FileOutputStream file = null;
         try {
             createDirectory(handle.getParentFile());
-            dir = new RandomAccessFile(handle, "rw");
-            lock = dir.getChannel().lock();
-            output = new ObjectOutputStream(new GZIPOutputStream(
-                    new FileOutputStream(dir.getFD()), 8192));
+            temp = File.createTempFile(handle.getName(), ".tmp",
+                    handle.getParentFile());
+            file = new FileOutputStream(temp);
+            DataOutputStream output = new DataOutputStream(
+                    new BufferedOutputStream(file, 8192));
+            output.writeInt(MAGIC);
             output.writeInt(version);
-            output.writeObject(request);
+            codec.write(request, output);
+            output.flush();
+            file.getFD().sync();
+            file.close();
+            file = null;
+
+            if (!temp.renameTo(handle))
+                throw new IOException("Unable to replace " + handle.getName());
+            temp = null;
         } catch (IOException e) {
             Log.d(TAG, "Exception writing cache " + handle.getName(), e);
             return null;
         } finally {
-            if (output != null)
-                try {
-                    output.close();
-                } catch (IOException e) {
-                    Log.d(TAG, "Exception closing stream", e);
-                }
-            if (lock != null)
-                try {
-                    lock.release();
-                } catch (IOException e) {
-                    Log.d(TAG, "Exception unlocking file", e);
-                }
-            if (dir != null)
+            if (file != null)
                 try {
-                    dir.close();
+                    file.close();
                 } catch (IOException e) {
                     Log.d(TAG, "Exception closing file", e);
                 }
+            if (temp != null)
+                temp.delete();
         }
+        Log.d(TAG, "Wrote " + handle.getName() + " in "
+                + (System.currentTimeMillis() - start) + "ms");
         return request;
     }
 }
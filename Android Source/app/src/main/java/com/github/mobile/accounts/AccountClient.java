@@ -19,6 +19,7 @@ import static android.util.Log.DEBUG;
 import android.text.TextUtils;
 import android.util.Log;
 
+import com.github.mobile.ConnectionFactory;
 import com.github.mobile.DefaultClient;
 import com.google.inject.Provider;
 
@@ -47,6 +48,19 @@ public class AccountClient extends DefaultClient {
         this.accountProvider = accountProvider;
     }
 
+    /**
+     * Create account-aware client using given transport
+     *
+     * @param accountProvider
+     * @param connectionFactory
+     */
+    public AccountClient(final Provider<GitHubAccount> accountProvider,
+            final ConnectionFactory connectionFactory) {
+        super(connectionFactory);
+
+        this.accountProvider = accountProvider;
+    }
+
     @Override
     protected HttpURLConnection configureRequest(final HttpURLConnection request) {
         GitHubAccount account = accountProvider.get();
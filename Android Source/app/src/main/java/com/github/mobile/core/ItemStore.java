@@ -15,16 +15,48 @@
  */
 package com.github.mobile.core;
 
+import android.support.v4.util.LruCache;
+
 import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Generic weak store of ids to items
+ * Generic store of ids to items
+ * <p>
+ * The most recently used items are strongly referenced and the rest are only
+ * weakly referenced until they are garbage collected.
  */
 public abstract class ItemStore {
 
+    /**
+     * Default number of recently used items strongly referenced by each
+     * {@link ItemReferences}
+     */
+    protected static final int DEFAULT_HOT_SIZE = 32;
+
+    private static final Set<ItemReferences<?>> ALL_REFERENCES = Collections
+            .newSetFromMap(new WeakHashMap<ItemReferences<?>, Boolean>());
+
+    /**
+     * Release the strong references to recently used items of all stores
+     *
+     * @param fraction
+     *            fraction of the recently used items to keep, 0 to release
+     *            them all
+     */
+    public static void trimMemory(final float fraction) {
+        synchronized (ALL_REFERENCES) {
+            for (ItemReferences<?> references : ALL_REFERENCES)
+                references.trimToSize(fraction);
+        }
+    }
+
     private static class ItemReference<V> extends WeakReference<V> {
 
         private Object id;
@@ -53,19 +85,41 @@ public abstract class ItemStore {
 
         private final Map<Object, ItemReference<V>> items;
 
+        private final LruCache<Object, V> hot;
+
+        private final AtomicInteger hits = new AtomicInteger();
+
+        private final AtomicInteger misses = new AtomicInteger();
+
         /**
          * Create reference store
          */
         public ItemReferences() {
+            this(DEFAULT_HOT_SIZE);
+        }
+
+        /**
+         * Create reference store
+         *
+         * @param hotSize
+         *            number of recently used items to strongly reference
+         */
+        public ItemReferences(final int hotSize) {
             queue = new ReferenceQueue<V>();
             items = new ConcurrentHashMap<Object, ItemReference<V>>();
+            hot = new LruCache<Object, V>(hotSize);
+
+            synchronized (ALL_REFERENCES) {
+                ALL_REFERENCES.add(this);
+            }
         }
 
         @SuppressWarnings("rawtypes")
         private void expungeEntries() {
             ItemReference ref;
             while ((ref = (ItemReference) queue.poll()) != null)
-                items.remove(ref.id);
+                // Only remove the entry if it wasn't replaced since
+                items.remove(ref.id, ref);
         }
 
         /**
@@ -75,9 +129,21 @@ public abstract class ItemStore {
          * @return item
          */
         public V get(final Object id) {
+            V item = hot.get(id);
+            if (item != null) {
+                hits.incrementAndGet();
+                return item;
+            }
+
             expungeEntries();
             WeakReference<V> ref = items.get(id);
-            return ref != null ? ref.get() : null;
+            item = ref != null ? ref.get() : null;
+            if (item != null) {
+                hits.incrementAndGet();
+                hot.put(id, item);
+            } else
+                misses.incrementAndGet();
+            return item;
         }
 
         /**
@@ -86,9 +152,62 @@ public abstract class ItemStore {
          * @param id
          * @param item
          */
-        public void put(Object id, V item) {
+        public synchronized void put(Object id, V item) {
+            expungeEntries();
+            items.put(id, new ItemReference<V>(item, id, queue));
+            hot.put(id, item);
+        }
+
+        /**
+         * Insert item with id into store unless an item with the id is
+         * already present
+         *
+         * @param id
+         * @param item
+         * @return item in the store with the id
+         */
+        public synchronized V putIfAbsent(Object id, V item) {
             expungeEntries();
+            WeakReference<V> ref = items.get(id);
+            V current = ref != null ? ref.get() : null;
+            if (current != null)
+                return current;
+
             items.put(id, new ItemReference<V>(item, id, queue));
+            hot.put(id, item);
+            return item;
+        }
+
+        /**
+         * Release the strong references to recently used items
+         *
+         * @param fraction
+         *            fraction of the recently used items to keep
+         */
+        public void trimToSize(final float fraction) {
+            hot.trimToSize((int) (hot.maxSize() * fraction));
+        }
+
+        /**
+         * @return number of items found in the store
+         */
+        public int hitCount() {
+            return hits.get();
+        }
+
+        /**
+         * @return number of items not found in the store
+         */
+        public int missCount() {
+            return misses.get();
+        }
+
+        /**
+         * @return number of items no longer strongly referenced because
+         *         they were not recently used or memory was trimmed
+         */
+        public int evictionCount() {
+            return hot.evictionCount();
         }
     }
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile.core;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * List of resources in the order their ids were first added
+ * <p>
+ * Adding a resource with the id of an existing resource replaces it in place.
+ * Numeric ids are indexed in an open addressing table of primitive longs so
+ * they are never boxed.
+ *
+ * @param <E>
+ */
+public class ResourceList<E> extends AbstractList<E> implements RandomAccess {
+
+    /**
+     * Read-only view of the first elements of an array
+     * <p>
+     * The list never writes to positions of an array below the size of a
+     * snapshot taken of it so the view needs no copy.
+     *
+     * @param <E>
+     */
+    private static class Snapshot<E> extends AbstractList<E> implements
+            RandomAccess {
+
+        private final Object[] elements;
+
+        private final int size;
+
+        private Snapshot(final Object[] elements, final int size) {
+            this.elements = elements;
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public E get(final int location) {
+            if (location < 0 || location >= size)
+                throw new IndexOutOfBoundsException();
+            return (E) elements[location];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Object[] toArray() {
+            return Arrays.copyOf(elements, size);
+        }
+    }
+
+    private Object[] elements = new Object[16];
+
+    /**
+     * Is {@link #elements} referenced by a snapshot?
+     */
+    private boolean shared;
+
+    private int size;
+
+    private long[] keys = new long[32];
+
+    /**
+     * Position of the element with the key in the same slot plus one, 0 for
+     * empty slots
+     */
+    private int[] positions = new int[32];
+
+    private int keyCount;
+
+    private Map<Object, Integer> objectPositions;
+
+    private static int hash(final long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    /**
+     * Add resource with numeric id
+     *
+     * @param id
+     * @param resource
+     * @return true if added, false if it replaced a resource with the same id
+     */
+    public boolean put(final long id, final E resource) {
+        int mask = keys.length - 1;
+        int slot = hash(id) & mask;
+        while (positions[slot] != 0) {
+            if (keys[slot] == id) {
+                replace(positions[slot] - 1, resource);
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = id;
+        positions[slot] = append(resource) + 1;
+        if (++keyCount * 2 > keys.length)
+            rehash(keys.length * 2);
+        return true;
+    }
+
+    /**
+     * Add resource with id
+     *
+     * @param id
+     * @param resource
+     * @return true if added, false if it replaced a resource with the same id
+     */
+    public boolean put(final Object id, final E resource) {
+        if (objectPositions == null)
+            objectPositions = new HashMap<Object, Integer>();
+        Integer position = objectPositions.get(id);
+        if (position != null) {
+            replace(position, resource);
+            return false;
+        }
+
+        objectPositions.put(id, append(resource));
+        return true;
+    }
+
+    private int append(final E resource) {
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+            shared = false;
+        }
+        elements[size] = resource;
+        return size++;
+    }
+
+    private void replace(final int position, final E resource) {
+        if (shared) {
+            elements = elements.clone();
+            shared = false;
+        }
+        elements[position] = resource;
+    }
+
+    private void rehash(final int capacity) {
+        long[] oldKeys = keys;
+        int[] oldPositions = positions;
+        keys = new long[capacity];
+        positions = new int[capacity];
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldPositions[i] == 0)
+                continue;
+            int slot = hash(oldKeys[i]) & mask;
+            while (positions[slot] != 0)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            positions[slot] = oldPositions[i];
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public E get(final int location) {
+        if (location < 0 || location >= size)
+            throw new IndexOutOfBoundsException();
+        return (E) elements[location];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Object[] toArray() {
+        return Arrays.copyOf(elements, size);
+    }
+
+    /**
+     * Get an unmodifiable view of the resources currently in this list that
+     * is not affected by later changes to this list
+     * <p>
+     * Taking a snapshot does not copy, the elements are only copied when a
+     * resource is replaced afterwards
+     *
+     * @return snapshot
+     */
+    public List<E> snapshot() {
+        shared = true;
+        return new Snapshot<E>(elements, size);
+    }
+
+    @Override
+    public void clear() {
+        elements = new Object[16];
+        shared = false;
+        size = 0;
+        keys = new long[32];
+        positions = new int[32];
+        keyCount = 0;
+        objectPositions = null;
+    }
+}
@@ -15,23 +15,62 @@
  */
 package com.github.mobile.core;
 
+import static com.github.mobile.util.FutureUtils.get;
+
+import com.github.mobile.util.FutureUtils;
+
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedHashMap;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
 
 import org.eclipse.egit.github.core.client.NoSuchPageException;
 import org.eclipse.egit.github.core.client.PageIterator;
 
 /**
  * Generic resource pager for elements with an id that can be paged
+ * <p>
+ * Pages are fetched concurrently when restoring previously loaded pages and
+ * the page after the last loaded page can be prefetched, in both cases
+ * resources are still registered and stored in page order by the thread
+ * calling {@link #next()}.
+ * <p>
+ * Pager state is guarded by this pager so {@link #clear()} and
+ * {@link #size()} can be called from the UI thread while a page loads. Pages
+ * requested before a call to {@link #clear()} are dropped.
  *
  * @param <E>
  */
 public abstract class ResourcePager<E> {
 
+    /**
+     * Fetched page of resources
+     *
+     * @param <E>
+     */
+    private static class Page<E> {
+
+        private final int number;
+
+        private final Collection<E> resources;
+
+        private final boolean hasNext;
+
+        private final int last;
+
+        private Page(final int number, final Collection<E> resources,
+                final boolean hasNext, final int last) {
+            this.number = number;
+            this.resources = resources;
+            this.hasNext = hasNext;
+            this.last = last;
+        }
+    }
+
     /**
      * Next page to request
      */
@@ -42,23 +81,52 @@ public abstract class ResourcePager<E> {
      */
     protected int count = 1;
 
+    /**
+     * Id returned from {@link #getLongId(Object)} for resources that are
+     * identified by {@link #getId(Object)}
+     */
+    protected static final long NO_ID = Long.MIN_VALUE;
+
     /**
      * All resources retrieved
      */
-    protected final Map<Object, E> resources = new LinkedHashMap<Object, E>();
+    protected final ResourceList<E> resources = new ResourceList<E>();
 
     /**
      * Are more pages available?
      */
     protected boolean hasMore;
 
+    private boolean prefetch;
+
+    /**
+     * Incremented each time this pager is cleared
+     */
+    private int generation;
+
+    private Future<Page<E>> prefetched;
+
+    /**
+     * Set whether the page after the last loaded page is requested in the
+     * background as soon as a page is loaded
+     *
+     * @param prefetch
+     * @return this pager
+     */
+    public ResourcePager<E> setPrefetch(final boolean prefetch) {
+        this.prefetch = prefetch;
+        if (!prefetch)
+            cancelPrefetch();
+        return this;
+    }
+
     /**
      * Reset the number of the next page to be requested from {@link #next()}
      * and clear all stored state
      *
      * @return this pager
      */
-    public ResourcePager<E> reset() {
+    public synchronized ResourcePager<E> reset() {
         page = 1;
         return clear();
     }
@@ -69,7 +137,9 @@ public abstract class ResourcePager<E> {
      *
      * @return this pager
      */
-    public ResourcePager<E> clear() {
+    public synchronized ResourcePager<E> clear() {
+        generation++;
+        cancelPrefetch();
         count = Math.max(1, page - 1);
         page = 1;
         resources.clear();
@@ -82,54 +152,185 @@ public abstract class ResourcePager<E> {
      *
      * @return number of resources
      */
-    public int size() {
+    public synchronized int size() {
         return resources.size();
     }
 
     /**
      * Get resources
+     * <p>
+     * The returned list is an unmodifiable view of the resources loaded so far
+     * that is not affected by later calls to {@link #next()} or
+     * {@link #clear()}
      *
      * @return resources
      */
-    public List<E> getResources() {
-        return new ArrayList<E>(resources.values());
+    public synchronized List<E> getResources() {
+        return resources.snapshot();
     }
 
     /**
      * Get the next page of issues
+     * <p>
+     * All previously loaded pages are requested if this pager was cleared
      *
      * @return true if more pages
      * @throws IOException
      */
     public boolean next() throws IOException {
-        boolean emptyPage = false;
-        PageIterator<E> iterator = createIterator(page, -1);
+        final int started;
+        final int number;
+        final int pages;
+        synchronized (this) {
+            started = generation;
+            number = page;
+            pages = count;
+        }
+
+        List<Page<E>> loaded;
         try {
-            for (int i = 0; i < count && iterator.hasNext(); i++) {
-                Collection<E> resourcePage = iterator.next();
-                emptyPage = resourcePage.isEmpty();
-                if (emptyPage)
-                    break;
-                for (E resource : resourcePage) {
-                    resource = register(resource);
-                    if (resource == null)
-                        continue;
-                    resources.put(getId(resource), resource);
-                }
+            if (pages > 1)
+                loaded = restore(pages);
+            else {
+                Page<E> next = takePrefetched(number);
+                if (next == null)
+                    next = fetch(number);
+                loaded = Collections.singletonList(next);
+            }
+        } catch (IOException e) {
+            synchronized (this) {
+                if (started == generation)
+                    hasMore = false;
             }
-            // Set page to count value if first call after call to reset()
-            if (count > 1) {
-                page = count;
-                count = 1;
+            throw e;
+        }
+
+        synchronized (this) {
+            if (started != generation)
+                return hasMore;
+
+            Page<E> last = null;
+            for (Page<E> next : loaded) {
+                add(next);
+                last = next;
             }
+            count = 1;
+            page = last.number + 1;
+            hasMore = last.hasNext && !last.resources.isEmpty();
+            if (hasMore && prefetch)
+                prefetch(page);
+            return hasMore;
+        }
+    }
 
-            page++;
+    /**
+     * Request the given number of pages concurrently
+     *
+     * @param pages
+     * @return pages loaded, in order
+     * @throws IOException
+     */
+    private List<Page<E>> restore(final int pages) throws IOException {
+        // The first page has the number of the last page if more than one
+        Page<E> first = fetch(1);
+        int last = first.hasNext ? pages : 1;
+        if (first.last > 0)
+            last = Math.min(last, first.last);
+
+        List<Future<Page<E>>> futures = new ArrayList<Future<Page<E>>>(
+                last - 1);
+        for (int number = 2; number <= last; number++)
+            futures.add(submit(number));
+
+        List<Page<E>> loaded = new ArrayList<Page<E>>(last);
+        loaded.add(first);
+        Page<E> previous = first;
+        try {
+            for (Future<Page<E>> future : futures) {
+                if (previous.resources.isEmpty())
+                    break;
+                previous = get(future);
+                loaded.add(previous);
+            }
+        } finally {
+            for (Future<Page<E>> future : futures)
+                future.cancel(true);
+        }
+        return loaded;
+    }
+
+    private void add(final Page<E> loaded) {
+        for (E resource : loaded.resources) {
+            resource = register(resource);
+            if (resource == null)
+                continue;
+            long id = getLongId(resource);
+            if (id != NO_ID)
+                resources.put(id, resource);
+            else
+                resources.put(getId(resource), resource);
+        }
+    }
+
+    private Page<E> fetch(final int number) throws IOException {
+        PageIterator<E> iterator = createIterator(number, -1);
+        try {
+            Collection<E> resourcePage;
+            if (iterator.hasNext())
+                resourcePage = iterator.next();
+            else
+                resourcePage = Collections.emptyList();
+            return new Page<E>(number, resourcePage, iterator.hasNext(),
+                    iterator.getLastPage());
         } catch (NoSuchPageException e) {
-            hasMore = false;
             throw e.getCause();
         }
-        hasMore = iterator.hasNext() && !emptyPage;
-        return hasMore;
+    }
+
+    private Future<Page<E>> submit(final int number) {
+        return FutureUtils.submit(new Callable<Page<E>>() {
+
+            @Override
+            public Page<E> call() throws Exception {
+                return fetch(number);
+            }
+        });
+    }
+
+    private synchronized void prefetch(final int number) {
+        cancelPrefetch();
+        prefetched = submit(number);
+    }
+
+    private synchronized Future<Page<E>> takeFuture() {
+        Future<Page<E>> future = prefetched;
+        prefetched = null;
+        return future;
+    }
+
+    private Page<E> takePrefetched(final int number) {
+        Future<Page<E>> future = takeFuture();
+        if (future == null)
+            return null;
+
+        Page<E> loaded;
+        try {
+            loaded = get(future);
+        } catch (IOException e) {
+            future.cancel(true);
+            // Request the page again to report a current error
+            return null;
+        } catch (CancellationException e) {
+            return null;
+        }
+        return loaded.number == number ? loaded : null;
+    }
+
+    private synchronized void cancelPrefetch() {
+        if (prefetched != null) {
+            prefetched.cancel(true);
+            prefetched = null;
+        }
     }
 
     /**
@@ -138,7 +339,7 @@ public abstract class ResourcePager<E> {
      * @return true if the last call to {@link #next()} returned true, false
      *         otherwise
      */
-    public boolean hasMore() {
+    public synchronized boolean hasMore() {
         return hasMore;
     }
 
@@ -156,11 +357,29 @@ public abstract class ResourcePager<E> {
 
     /**
      * Get id for resource
+     * <p>
+     * Only called when {@link #getLongId(Object)} returns {@link #NO_ID}, the
+     * default implementation boxes the numeric id
      *
      * @param resource
      * @return id
      */
-    protected abstract Object getId(E resource);
+    protected Object getId(E resource) {
+        return getLongId(resource);
+    }
+
+    /**
+     * Get numeric id for resource
+     * <p>
+     * Sub-classes of resources with numeric ids should override this instead
+     * of {@link #getId(Object)} so ids aren't boxed
+     *
+     * @param resource
+     * @return id or {@link #NO_ID} to use {@link #getId(Object)}
+     */
+    protected long getLongId(E resource) {
+        return NO_ID;
+    }
 
     /**
      * Create iterator to return given page and size
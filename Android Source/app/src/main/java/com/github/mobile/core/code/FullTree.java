@@ -20,12 +20,13 @@ import static org.eclipse.egit.github.core.TreeEntry.TYPE_BLOB;
 import static org.eclipse.egit.github.core.TreeEntry.TYPE_TREE;
 import android.text.TextUtils;
 
-import com.github.mobile.core.commit.CommitUtils;
 import com.github.mobile.core.ref.RefUtils;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 
 import org.eclipse.egit.github.core.Reference;
 import org.eclipse.egit.github.core.Tree;
@@ -33,6 +34,13 @@ import org.eclipse.egit.github.core.TreeEntry;
 
 /**
  * {@link Tree} with additional information
+ * <p>
+ * Entries are indexed into flat arrays when the tree is created and the
+ * {@link Entry} and {@link Folder} objects for a folder's children are only
+ * created and sorted the first time the folder is opened.
+ * <p>
+ * A tree created from a single level has folders that are not loaded until
+ * their own tree is added through {@link #load(Folder, Tree)}.
  */
 public class FullTree {
 
@@ -56,16 +64,10 @@ public class FullTree {
          */
         public final String name;
 
-        private Entry() {
-            this.parent = null;
-            this.entry = null;
-            this.name = null;
-        }
-
-        private Entry(TreeEntry entry, Folder parent) {
+        private Entry(TreeEntry entry, Folder parent, String name) {
             this.entry = entry;
             this.parent = parent;
-            this.name = CommitUtils.getName(entry.getPath());
+            this.name = name;
         }
 
         @Override
@@ -79,78 +81,121 @@ public class FullTree {
      */
     public static class Folder extends Entry {
 
+        private final FullTree tree;
+
+        private final int index;
+
+        private List<Folder> folders;
+
+        private List<Entry> files;
+
+        private Folder(FullTree tree, int index, Folder parent) {
+            super(tree.entries[index], parent, tree.names[index]);
+
+            this.tree = tree;
+            this.index = index;
+        }
+
         /**
-         * Sub folders
+         * Are the contents of this folder loaded?
+         *
+         * @return true if loaded, false if the folder's tree must still be
+         *         added through {@link FullTree#load(Folder, Tree)}
          */
-        public final Map<String, Folder> folders = new TreeMap<String, Folder>(
-                CASE_INSENSITIVE_ORDER);
+        public boolean isLoaded() {
+            return tree.loaded[index];
+        }
 
         /**
-         * Files
+         * Get SHA-1 of the tree with this folder's contents
+         *
+         * @return SHA-1
          */
-        public final Map<String, Entry> files = new TreeMap<String, Entry>(
-                CASE_INSENSITIVE_ORDER);
+        public String getSha() {
+            return entry != null ? entry.getSha() : tree.tree.getSha();
+        }
 
-        private Folder() {
-            super();
+        /**
+         * Get sub folders sorted by name
+         *
+         * @return folders, empty if not loaded
+         */
+        public List<Folder> getFolders() {
+            if (folders == null)
+                load();
+            return folders != null ? folders : Collections.<Folder> emptyList();
         }
 
-        private Folder(TreeEntry entry, Folder parent) {
-            super(entry, parent);
+        /**
+         * Get files sorted by name
+         *
+         * @return files, empty if not loaded
+         */
+        public List<Entry> getFiles() {
+            if (files == null)
+                load();
+            return files != null ? files : Collections.<Entry> emptyList();
         }
 
-        private void addFile(TreeEntry entry, String[] pathSegments, int index) {
-            if (index == pathSegments.length - 1) {
-                Entry file = new Entry(entry, this);
-                files.put(file.name, file);
-            } else {
-                Folder folder = folders.get(pathSegments[index]);
-                if (folder != null)
-                    folder.addFile(entry, pathSegments, index + 1);
-            }
+        /**
+         * Get sub folder with given name
+         *
+         * @param name
+         * @return folder or null if no folder with the name exists
+         */
+        public Folder getFolder(String name) {
+            for (Folder folder : getFolders())
+                if (CASE_INSENSITIVE_ORDER.compare(name, folder.name) == 0)
+                    return folder;
+            return null;
         }
 
-        private void addFolder(TreeEntry entry, String[] pathSegments, int index) {
-            if (index == pathSegments.length - 1) {
-                Folder folder = new Folder(entry, this);
-                folders.put(folder.name, folder);
-            } else {
-                Folder folder = folders.get(pathSegments[index]);
-                if (folder != null)
-                    folder.addFolder(entry, pathSegments, index + 1);
-            }
+        /**
+         * Get number of sub folders without loading them
+         *
+         * @return folder count or -1 if not loaded
+         */
+        public int getFolderCount() {
+            return isLoaded() ? tree.folderCounts[index] : -1;
         }
 
-        private void add(final TreeEntry entry) {
-            String type = entry.getType();
-            String path = entry.getPath();
-            if (TextUtils.isEmpty(path))
+        /**
+         * Get number of files without loading them
+         *
+         * @return file count or -1 if not loaded
+         */
+        public int getFileCount() {
+            return isLoaded() ? tree.fileCounts[index] : -1;
+        }
+
+        private void load() {
+            if (!isLoaded())
                 return;
 
-            if (TYPE_BLOB.equals(type)) {
-                String[] segments = path.split("/");
-                if (segments.length > 1) {
-                    Folder folder = folders.get(segments[0]);
-                    if (folder != null)
-                        folder.addFile(entry, segments, 1);
-                } else if (segments.length == 1) {
-                    Entry file = new Entry(entry, this);
-                    files.put(file.name, file);
-                }
-            } else if (TYPE_TREE.equals(type)) {
-                String[] segments = path.split("/");
-                if (segments.length > 1) {
-                    Folder folder = folders.get(segments[0]);
-                    if (folder != null)
-                        folder.addFolder(entry, segments, 1);
-                } else if (segments.length == 1) {
-                    Folder folder = new Folder(entry, this);
-                    folders.put(folder.name, folder);
-                }
-            }
+            int[] children = tree.getChildren();
+            int start = tree.offsets[index];
+            int folderCount = getFolderCount();
+            int fileCount = getFileCount();
+
+            List<Folder> folders = new ArrayList<Folder>(folderCount);
+            for (int i = start; i < start + folderCount; i++)
+                folders.add(new Folder(tree, children[i], this));
+            Collections.sort(folders);
+
+            List<Entry> files = new ArrayList<Entry>(fileCount);
+            for (int i = start + folderCount; i < start + folderCount
+                    + fileCount; i++)
+                files.add(new Entry(tree.entries[children[i]], this,
+                        tree.names[children[i]]));
+            Collections.sort(files);
+
+            this.folders = Collections.unmodifiableList(folders);
+            this.files = Collections.unmodifiableList(files);
         }
     }
 
+    private static final int ROOT = 0;
+
     /**
      * Tree
      */
@@ -171,6 +216,26 @@ public class FullTree {
      */
     public final String branch;
 
+    private int size;
+
+    private TreeEntry[] entries;
+
+    private String[] names;
+
+    private int[] parents;
+
+    private boolean[] isFolder;
+
+    private boolean[] loaded;
+
+    private int[] folderCounts;
+
+    private int[] fileCounts;
+
+    private int[] offsets;
+
+    private int[] children;
+
     /**
      * Create tree with branch
      *
@@ -178,14 +243,234 @@ public class FullTree {
      * @param reference
      */
     public FullTree(final Tree tree, final Reference reference) {
+        this(tree, reference, true);
+    }
+
+    /**
+     * Create tree with branch
+     *
+     * @param tree
+     * @param reference
+     * @param recursive
+     *            true if the tree contains all entries, false if it only
+     *            contains the top level
+     */
+    public FullTree(final Tree tree, final Reference reference,
+            final boolean recursive) {
         this.tree = tree;
         this.reference = reference;
         this.branch = RefUtils.getName(reference);
 
-        root = new Folder();
-        List<TreeEntry> entries = tree.getTree();
-        if (entries != null && !entries.isEmpty())
-            for (TreeEntry entry : entries)
-                root.add(entry);
+        List<TreeEntry> treeEntries = tree.getTree();
+        int capacity = treeEntries != null ? treeEntries.size() + 1 : 1;
+        entries = new TreeEntry[capacity];
+        names = new String[capacity];
+        parents = new int[capacity];
+        isFolder = new boolean[capacity];
+        loaded = new boolean[capacity];
+        folderCounts = new int[capacity];
+        fileCounts = new int[capacity];
+
+        add(null, -1, null, true);
+        loaded[ROOT] = true;
+        if (treeEntries != null && !treeEntries.isEmpty())
+            index(treeEntries, recursive);
+
+        root = new Folder(this, ROOT, null);
+    }
+
+    /**
+     * Index the entries in a single pass
+     * <p>
+     * Folders that are referenced by a path before their own entry has been
+     * seen are added immediately and completed once the entry arrives.
+     *
+     * @param treeEntries
+     * @param recursive
+     */
+    private void index(final List<TreeEntry> treeEntries,
+            final boolean recursive) {
+        Map<String, Integer> folders = new HashMap<String, Integer>();
+        Map<String, String> segments = new HashMap<String, String>();
+        for (TreeEntry entry : treeEntries) {
+            String path = entry.getPath();
+            if (TextUtils.isEmpty(path))
+                continue;
+
+            String type = entry.getType();
+            if (TYPE_TREE.equals(type)) {
+                Integer existing = folders.get(path);
+                if (existing != null)
+                    entries[existing] = entry;
+                else {
+                    int folder = add(entry, getParent(path, folders, segments),
+                            getName(path, segments), true);
+                    loaded[folder] = recursive;
+                    folders.put(path, folder);
+                }
+            } else if (TYPE_BLOB.equals(type))
+                add(entry, getParent(path, folders, segments),
+                        getName(path, segments), false);
+        }
+    }
+
+    private int getParent(final String path, final Map<String, Integer> folders,
+            final Map<String, String> segments) {
+        int slash = path.lastIndexOf('/');
+        if (slash == -1)
+            return ROOT;
+
+        String parentPath = path.substring(0, slash);
+        Integer parent = folders.get(parentPath);
+        if (parent != null)
+            return parent;
+
+        TreeEntry entry = new TreeEntry();
+        entry.setPath(parentPath);
+        entry.setType(TYPE_TREE);
+        int added = add(entry, getParent(parentPath, folders, segments),
+                getName(parentPath, segments), true);
+        loaded[added] = true;
+        folders.put(parentPath, added);
+        return added;
+    }
+
+    /**
+     * Get last segment of path, sharing equal segments across entries
+     *
+     * @param path
+     * @param segments
+     * @return name
+     */
+    private static String getName(final String path,
+            final Map<String, String> segments) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        String shared = segments.get(name);
+        if (shared != null)
+            return shared;
+        segments.put(name, name);
+        return name;
+    }
+
+    private int add(final TreeEntry entry, final int parent, final String name,
+            final boolean folder) {
+        if (size == entries.length)
+            grow();
+
+        int index = size++;
+        entries[index] = entry;
+        names[index] = name;
+        parents[index] = parent;
+        isFolder[index] = folder;
+        if (parent != -1)
+            if (folder)
+                folderCounts[parent]++;
+            else
+                fileCounts[parent]++;
+        return index;
+    }
+
+    private void grow() {
+        int capacity = entries.length * 2;
+        TreeEntry[] newEntries = new TreeEntry[capacity];
+        System.arraycopy(entries, 0, newEntries, 0, size);
+        entries = newEntries;
+        String[] newNames = new String[capacity];
+        System.arraycopy(names, 0, newNames, 0, size);
+        names = newNames;
+        int[] newParents = new int[capacity];
+        System.arraycopy(parents, 0, newParents, 0, size);
+        parents = newParents;
+        boolean[] newIsFolder = new boolean[capacity];
+        System.arraycopy(isFolder, 0, newIsFolder, 0, size);
+        isFolder = newIsFolder;
+        boolean[] newLoaded = new boolean[capacity];
+        System.arraycopy(loaded, 0, newLoaded, 0, size);
+        loaded = newLoaded;
+        int[] newFolderCounts = new int[capacity];
+        System.arraycopy(folderCounts, 0, newFolderCounts, 0, size);
+        folderCounts = newFolderCounts;
+        int[] newFileCounts = new int[capacity];
+        System.arraycopy(fileCounts, 0, newFileCounts, 0, size);
+        fileCounts = newFileCounts;
+    }
+
+    /**
+     * Add the contents of a folder that was not loaded
+     * <p>
+     * The entries of the given tree are copied with paths relative to the
+     * root of this tree so the given tree can be shared with other trees.
+     *
+     * @param folder
+     * @param folderTree
+     *            non-recursive tree of the folder
+     */
+    public synchronized void load(final Folder folder, final Tree folderTree) {
+        if (folder.isLoaded())
+            return;
+
+        String prefix = folder.entry != null ? folder.entry.getPath() + '/'
+                : "";
+        List<TreeEntry> treeEntries = folderTree.getTree();
+        if (treeEntries != null)
+            for (TreeEntry entry : treeEntries) {
+                String name = entry.getPath();
+                if (TextUtils.isEmpty(name))
+                    continue;
+
+                boolean isTree = TYPE_TREE.equals(entry.getType());
+                if (!isTree && !TYPE_BLOB.equals(entry.getType()))
+                    continue;
+
+                TreeEntry copy = new TreeEntry();
+                copy.setPath(prefix + name);
+                copy.setType(entry.getType());
+                copy.setMode(entry.getMode());
+                copy.setSha(entry.getSha());
+                copy.setSize(entry.getSize());
+                copy.setUrl(entry.getUrl());
+                add(copy, folder.index, name, isTree);
+            }
+        loaded[folder.index] = true;
+
+        // Group children again on next use
+        children = null;
+        offsets = null;
+    }
+
+    /**
+     * Get the children of every folder grouped by parent, with each parent's
+     * folders before its files
+     * <p>
+     * This is built on first use since most folders are never opened
+     *
+     * @return children indexed by {@link #offsets}
+     */
+    private synchronized int[] getChildren() {
+        if (children != null)
+            return children;
+
+        int[] offsets = new int[size];
+        int offset = 0;
+        for (int i = 0; i < size; i++) {
+            offsets[i] = offset;
+            offset += folderCounts[i] + fileCounts[i];
+        }
+
+        int[] folderFill = new int[size];
+        int[] fileFill = new int[size];
+        int[] children = new int[offset];
+        for (int i = ROOT + 1; i < size; i++) {
+            int parent = parents[i];
+            if (isFolder[i])
+                children[offsets[parent] + folderFill[parent]++] = i;
+            else
+                children[offsets[parent] + folderCounts[parent]
+                        + fileFill[parent]++] = i;
+        }
+
+        this.offsets = offsets;
+        this.children = children;
+        return children;
     }
 }
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile.core.code;
+
+import android.accounts.Account;
+import android.content.Context;
+import android.util.Log;
+
+import com.github.mobile.accounts.AuthenticatedUserTask;
+import com.github.mobile.core.code.FullTree.Folder;
+import com.google.inject.Inject;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.eclipse.egit.github.core.IRepositoryIdProvider;
+import org.eclipse.egit.github.core.Tree;
+
+/**
+ * Task to load the contents of folders in a tree that was loaded one level at
+ * a time
+ * <p>
+ * The fetched trees are added to the {@link FullTree} on the UI thread before
+ * {@link #onLoaded(FullTree)} is called.
+ */
+public class LoadFoldersTask extends
+        AuthenticatedUserTask<Map<Folder, Tree>> {
+
+    private static final String TAG = "LoadFoldersTask";
+
+    private final IRepositoryIdProvider repository;
+
+    private final FullTree tree;
+
+    private final List<Folder> folders;
+
+    @Inject
+    private TreeCache cache;
+
+    /**
+     * Create task to load the given folders
+     *
+     * @param context
+     * @param repository
+     * @param tree
+     * @param folders
+     */
+    public LoadFoldersTask(final Context context,
+            final IRepositoryIdProvider repository, final FullTree tree,
+            final Collection<Folder> folders) {
+        super(context);
+
+        this.repository = repository;
+        this.tree = tree;
+        this.folders = new ArrayList<Folder>(folders);
+    }
+
+    @Override
+    protected Map<Folder, Tree> run(final Account account) throws Exception {
+        Map<Folder, Tree> trees = new LinkedHashMap<Folder, Tree>();
+        for (Folder folder : folders) {
+            if (Thread.interrupted())
+                break;
+            if (!folder.isLoaded())
+                trees.put(folder, cache.getTree(repository, folder.getSha()));
+        }
+        return trees;
+    }
+
+    @Override
+    protected void onSuccess(final Map<Folder, Tree> trees) throws Exception {
+        super.onSuccess(trees);
+
+        for (Entry<Folder, Tree> entry : trees.entrySet())
+            tree.load(entry.getKey(), entry.getValue());
+        onLoaded(tree);
+    }
+
+    /**
+     * Called on the UI thread once the folders are loaded
+     *
+     * @param tree
+     */
+    protected void onLoaded(final FullTree tree) {
+    }
+
+    @Override
+    protected void onException(final Exception e) throws RuntimeException {
+        super.onException(e);
+
+        Log.d(TAG, "Exception loading folders", e);
+    }
+}
@@ -26,15 +26,13 @@ import com.google.inject.Inject;
 
 import java.io.IOException;
 
-import org.eclipse.egit.github.core.Commit;
 import org.eclipse.egit.github.core.Reference;
 import org.eclipse.egit.github.core.Repository;
-import org.eclipse.egit.github.core.Tree;
-import org.eclipse.egit.github.core.service.DataService;
-import org.eclipse.egit.github.core.service.RepositoryService;
 
 /**
  * Task to load the tree for a repository's default branch
+ * <p>
+ * Each step from reference to tree is resolved through {@link TreeCache}
  */
 public class RefreshTreeTask extends AuthenticatedUserTask<FullTree> {
 
@@ -44,11 +42,10 @@ public class RefreshTreeTask extends AuthenticatedUserTask<FullTree> {
 
     private final Reference reference;
 
-    @Inject
-    private RepositoryService repoService;
+    private final boolean recursive;
 
     @Inject
-    private DataService dataService;
+    private TreeCache cache;
 
     /**
      * Create task to refresh repository's tree
@@ -59,10 +56,27 @@ public class RefreshTreeTask extends AuthenticatedUserTask<FullTree> {
      */
     public RefreshTreeTask(final Repository repository,
             final Reference reference, final Context context) {
+        this(repository, reference, context, true);
+    }
+
+    /**
+     * Create task to refresh repository's tree
+     *
+     * @param repository
+     * @param reference
+     * @param context
+     * @param recursive
+     *            false to only load the top level of the tree, with folders
+     *            loaded later through {@link LoadFoldersTask}
+     */
+    public RefreshTreeTask(final Repository repository,
+            final Reference reference, final Context context,
+            final boolean recursive) {
         super(context);
 
         this.repository = repository;
         this.reference = reference;
+        this.recursive = recursive;
     }
 
     private boolean isValidRef(Reference ref) {
@@ -77,8 +91,7 @@ public class RefreshTreeTask extends AuthenticatedUserTask<FullTree> {
         if (branch == null) {
             branch = repository.getMasterBranch();
             if (TextUtils.isEmpty(branch)) {
-                branch = repoService.getRepository(repository)
-                        .getMasterBranch();
+                branch = cache.getMasterBranch(repository);
                 if (TextUtils.isEmpty(branch))
                     throw new IOException(
                             "Repository does not have master branch");
@@ -87,21 +100,17 @@ public class RefreshTreeTask extends AuthenticatedUserTask<FullTree> {
         }
 
         if (!isValidRef(ref)) {
-            ref = dataService.getReference(repository, branch);
+            ref = cache.getReference(repository, branch);
             if (!isValidRef(ref))
                 throw new IOException(
                         "Reference does not have associated commit SHA-1");
         }
 
-        Commit commit = dataService.getCommit(repository, ref.getObject()
-                .getSha());
-        if (commit == null || commit.getTree() == null
-                || TextUtils.isEmpty(commit.getTree().getSha()))
-            throw new IOException("Commit does not have associated tree SHA-1");
+        String sha = cache.getTreeSha(repository, ref.getObject().getSha());
+        if (!recursive)
+            return new FullTree(cache.getTree(repository, sha), ref, false);
 
-        Tree tree = dataService.getTree(repository, commit.getTree().getSha(),
-                true);
-        return new FullTree(tree, ref);
+        return new FullTree(cache.getRecursiveTree(repository, sha), ref);
     }
 
     @Override
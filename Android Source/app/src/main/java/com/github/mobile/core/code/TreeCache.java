@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile.core.code;
+
+import android.os.SystemClock;
+import android.support.v4.util.LruCache;
+import android.text.TextUtils;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.egit.github.core.Commit;
+import org.eclipse.egit.github.core.IRepositoryIdProvider;
+import org.eclipse.egit.github.core.Reference;
+import org.eclipse.egit.github.core.Tree;
+import org.eclipse.egit.github.core.TreeEntry;
+import org.eclipse.egit.github.core.service.DataService;
+import org.eclipse.egit.github.core.service.RepositoryService;
+
+/**
+ * Cache of the resolution of references to trees
+ * <p>
+ * Commits and trees are immutable so the tree SHA-1 of a commit and the trees
+ * themselves are cached until evicted. References move so they are only
+ * reused for {@link #REFERENCE_TTL} milliseconds.
+ */
+@Singleton
+public class TreeCache {
+
+    /**
+     * Maximum number of tree entries kept across all cached trees
+     */
+    private static final int MAX_ENTRIES = 20000;
+
+    /**
+     * Milliseconds a resolved reference or default branch is reused for
+     */
+    private static final long REFERENCE_TTL = 60 * 1000;
+
+    /**
+     * Value resolved at a point in time
+     *
+     * @param <V>
+     */
+    private static class Resolved<V> {
+
+        private final V value;
+
+        private final long time = SystemClock.elapsedRealtime();
+
+        private Resolved(final V value) {
+            this.value = value;
+        }
+
+        private boolean isFresh() {
+            return SystemClock.elapsedRealtime() - time < REFERENCE_TTL;
+        }
+    }
+
+    private static class TreeLruCache extends LruCache<String, Tree> {
+
+        private TreeLruCache() {
+            super(MAX_ENTRIES);
+        }
+
+        @Override
+        protected int sizeOf(String key, Tree value) {
+            List<TreeEntry> entries = value.getTree();
+            return entries != null ? Math.max(1, entries.size()) : 1;
+        }
+    }
+
+    private final LruCache<String, Tree> trees = new TreeLruCache();
+
+    private final LruCache<String, Tree> recursiveTrees = new TreeLruCache();
+
+    private final LruCache<String, String> commitTrees = new LruCache<String, String>(
+            1000);
+
+    private final Map<String, Resolved<Reference>> references = new ConcurrentHashMap<String, Resolved<Reference>>();
+
+    private final Map<String, Resolved<String>> branches = new ConcurrentHashMap<String, Resolved<String>>();
+
+    private final DataService service;
+
+    private final RepositoryService repoService;
+
+    /**
+     * Create cache using given services
+     *
+     * @param service
+     * @param repoService
+     */
+    @Inject
+    public TreeCache(final DataService service,
+            final RepositoryService repoService) {
+        this.service = service;
+        this.repoService = repoService;
+    }
+
+    /**
+     * Get cached tree
+     *
+     * @param sha
+     * @return tree or null if not cached
+     */
+    public Tree get(final String sha) {
+        return trees.get(sha);
+    }
+
+    /**
+     * Get single level tree, requesting it if not cached
+     *
+     * @param repository
+     * @param sha
+     * @return tree
+     * @throws IOException
+     */
+    public Tree getTree(final IRepositoryIdProvider repository,
+            final String sha) throws IOException {
+        Tree tree = trees.get(sha);
+        if (tree != null)
+            return tree;
+
+        tree = service.getTree(repository, sha, false);
+        trees.put(sha, tree);
+        return tree;
+    }
+
+    /**
+     * Get recursive tree, requesting it if not cached
+     *
+     * @param repository
+     * @param sha
+     * @return tree
+     * @throws IOException
+     */
+    public Tree getRecursiveTree(final IRepositoryIdProvider repository,
+            final String sha) throws IOException {
+        Tree tree = recursiveTrees.get(sha);
+        if (tree != null)
+            return tree;
+
+        tree = service.getTree(repository, sha, true);
+        recursiveTrees.put(sha, tree);
+        return tree;
+    }
+
+    /**
+     * Get SHA-1 of the tree of a commit, requesting the commit if not cached
+     *
+     * @param repository
+     * @param commitSha
+     * @return tree SHA-1
+     * @throws IOException
+     */
+    public String getTreeSha(final IRepositoryIdProvider repository,
+            final String commitSha) throws IOException {
+        String sha = commitTrees.get(commitSha);
+        if (sha != null)
+            return sha;
+
+        Commit commit = service.getCommit(repository, commitSha);
+        if (commit == null || commit.getTree() == null
+                || TextUtils.isEmpty(commit.getTree().getSha()))
+            throw new IOException("Commit does not have associated tree SHA-1");
+
+        sha = commit.getTree().getSha();
+        commitTrees.put(commitSha, sha);
+        return sha;
+    }
+
+    /**
+     * Get reference, requesting it if not resolved recently
+     *
+     * @param repository
+     * @param name
+     * @return reference
+     * @throws IOException
+     */
+    public Reference getReference(final IRepositoryIdProvider repository,
+            final String name) throws IOException {
+        String key = repository.generateId() + ':' + name;
+        Resolved<Reference> resolved = references.get(key);
+        if (resolved != null && resolved.isFresh())
+            return resolved.value;
+
+        Reference reference = service.getReference(repository, name);
+        references.put(key, new Resolved<Reference>(reference));
+        return reference;
+    }
+
+    /**
+     * Get default branch of repository, requesting it if not resolved
+     * recently
+     *
+     * @param repository
+     * @return branch or null if none
+     * @throws IOException
+     */
+    public String getMasterBranch(final IRepositoryIdProvider repository)
+            throws IOException {
+        String key = repository.generateId();
+        Resolved<String> resolved = branches.get(key);
+        if (resolved != null && resolved.isFresh())
+            return resolved.value;
+
+        String branch = repoService.getRepository(repository)
+                .getMasterBranch();
+        branches.put(key, new Resolved<String>(branch));
+        return branch;
+    }
+
+    /**
+     * Forget the references and default branch resolved for repository
+     *
+     * @param repository
+     */
+    public void removeReferences(final IRepositoryIdProvider repository) {
+        String id = repository.generateId();
+        branches.remove(id);
+        String prefix = id + ':';
+        Iterator<String> keys = references.keySet().iterator();
+        while (keys.hasNext())
+            if (keys.next().startsWith(prefix))
+                keys.remove();
+    }
+}
@@ -16,10 +16,11 @@
 package com.github.mobile.core.commit;
 
 import com.github.mobile.core.ItemStore;
+import com.github.mobile.persistence.ItemCache;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.egit.github.core.IRepositoryIdProvider;
 import org.eclipse.egit.github.core.RepositoryCommit;
@@ -30,17 +31,43 @@ import org.eclipse.egit.github.core.service.CommitService;
  */
 public class CommitStore extends ItemStore {
 
-    private final Map<String, ItemReferences<RepositoryCommit>> commits = new HashMap<String, ItemReferences<RepositoryCommit>>();
+    private final ConcurrentMap<String, ItemReferences<RepositoryCommit>> commits = new ConcurrentHashMap<String, ItemReferences<RepositoryCommit>>();
 
     private final CommitService service;
 
+    private final ItemCache cache;
+
     /**
      * Create commit store
      *
      * @param service
      */
     public CommitStore(final CommitService service) {
+        this(service, null);
+    }
+
+    /**
+     * Create commit store backed by given cache
+     *
+     * @param service
+     * @param cache
+     *            cache of refreshed commits, may be null
+     */
+    public CommitStore(final CommitService service, final ItemCache cache) {
         this.service = service;
+        this.cache = cache;
+    }
+
+    private ItemReferences<RepositoryCommit> getReferences(final String repoId) {
+        ItemReferences<RepositoryCommit> repoCommits = commits.get(repoId);
+        if (repoCommits == null) {
+            repoCommits = new ItemReferences<RepositoryCommit>();
+            ItemReferences<RepositoryCommit> existing = commits.putIfAbsent(
+                    repoId, repoCommits);
+            if (existing != null)
+                repoCommits = existing;
+        }
+        return repoCommits;
     }
 
     /**
@@ -57,6 +84,31 @@ public class CommitStore extends ItemStore {
         return repoCommits != null ? repoCommits.get(id) : null;
     }
 
+    /**
+     * Get commit, reading it from the cache of refreshed commits if not in
+     * memory
+     * <p>
+     * This reads from disk and must not be called on the UI thread. The
+     * cached commit is only added if the commit was not stored in the
+     * meantime so it never overwrites a newer copy.
+     *
+     * @param repo
+     * @param id
+     * @return commit or null if neither in store nor cached
+     */
+    public RepositoryCommit loadCommit(final IRepositoryIdProvider repo,
+            final String id) {
+        RepositoryCommit commit = getCommit(repo, id);
+        if (commit == null && cache != null) {
+            commit = cache.get(RepositoryCommit.class, repo.generateId() + '@'
+                    + id);
+            if (commit != null)
+                commit = getReferences(repo.generateId()).putIfAbsent(
+                        commit.getSha(), commit);
+        }
+        return commit;
+    }
+
     /**
      * Add commit to store
      *
@@ -78,13 +130,7 @@ public class CommitStore extends ItemStore {
             current.setUrl(commit.getUrl());
             return current;
         } else {
-            String repoId = repo.generateId();
-            ItemReferences<RepositoryCommit> repoCommits = commits.get(repoId);
-            if (repoCommits == null) {
-                repoCommits = new ItemReferences<RepositoryCommit>();
-                commits.put(repoId, repoCommits);
-            }
-            repoCommits.put(commit.getSha(), commit);
+            getReferences(repo.generateId()).put(commit.getSha(), commit);
             return commit;
         }
     }
@@ -99,6 +145,10 @@ public class CommitStore extends ItemStore {
      */
     public RepositoryCommit refreshCommit(final IRepositoryIdProvider repo,
             final String id) throws IOException {
-        return addCommit(repo, service.getCommit(repo, id));
+        RepositoryCommit commit = addCommit(repo, service.getCommit(repo, id));
+        if (cache != null)
+            cache.put(RepositoryCommit.class, repo.generateId() + '@' + id,
+                    commit);
+        return commit;
     }
 }
@@ -21,8 +21,9 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.egit.github.core.CommitComment;
 import org.eclipse.egit.github.core.CommitFile;
@@ -30,6 +31,9 @@ import org.eclipse.egit.github.core.RepositoryCommit;
 
 /**
  * Commit model with comments
+ * <p>
+ * Line comments are attached to their files through an index of the files by
+ * name so comments can be added a page at a time as they are loaded.
  */
 public class FullCommit extends ArrayList<CommitComment> implements
         Serializable {
@@ -40,6 +44,8 @@ public class FullCommit extends ArrayList<CommitComment> implements
 
     private final List<FullCommitFile> files;
 
+    private transient Map<String, FullCommitFile> filesByName;
+
     /**
      * Create commit with no comments
      *
@@ -58,60 +64,57 @@ public class FullCommit extends ArrayList<CommitComment> implements
 
     /**
      * Create commit with comments
+     * <p>
+     * The given comments are not modified
      *
      * @param commit
      * @param comments
      */
     public FullCommit(final RepositoryCommit commit,
             final Collection<CommitComment> comments) {
-        this.commit = commit;
+        this(commit);
 
-        List<CommitFile> rawFiles = commit.getFiles();
-        boolean hasComments = comments != null && !comments.isEmpty();
-        boolean hasFiles = rawFiles != null && !rawFiles.isEmpty();
-        if (hasFiles) {
-            files = new ArrayList<FullCommitFile>(rawFiles.size());
-            if (hasComments) {
-                for (CommitFile file : rawFiles) {
-                    Iterator<CommitComment> iterator = comments.iterator();
-                    FullCommitFile full = new FullCommitFile(file);
-                    while (iterator.hasNext()) {
-                        CommitComment comment = iterator.next();
-                        if (file.getFilename().equals(comment.getPath())) {
-                            full.add(comment);
-                            iterator.remove();
-                        }
-                    }
-                    files.add(full);
-                }
-                hasComments = !comments.isEmpty();
-            } else
-                for (CommitFile file : rawFiles)
-                    files.add(new FullCommitFile(file));
-        } else
-            files = Collections.emptyList();
+        if (comments != null)
+            addComments(comments);
+    }
 
-        if (hasComments)
-            addAll(comments);
+    private Map<String, FullCommitFile> getFilesByName() {
+        if (filesByName == null) {
+            filesByName = new HashMap<String, FullCommitFile>(files.size());
+            for (FullCommitFile file : files) {
+                String name = file.getFile().getFilename();
+                // Comments go to the first file with a matching name
+                if (name != null && !filesByName.containsKey(name))
+                    filesByName.put(name, file);
+            }
+        }
+        return filesByName;
+    }
+
+    /**
+     * Add comments, attaching line comments to their files
+     *
+     * @param comments
+     * @return this commit
+     */
+    public FullCommit addComments(final Collection<CommitComment> comments) {
+        ensureCapacity(size() + comments.size());
+        for (CommitComment comment : comments)
+            add(comment);
+        return this;
     }
 
     @Override
     public boolean add(final CommitComment comment) {
         String path = comment.getPath();
-        if (TextUtils.isEmpty(path))
-            return super.add(comment);
-        else {
-            boolean added = false;
-            for (FullCommitFile file : files)
-                if (path.equals(file.getFile().getFilename())) {
-                    file.add(comment);
-                    added = true;
-                    break;
-                }
-            if (!added)
-                added = super.add(comment);
-            return added;
+        if (!TextUtils.isEmpty(path) && !files.isEmpty()) {
+            FullCommitFile file = getFilesByName().get(path);
+            if (file != null) {
+                file.add(comment);
+                return true;
+            }
         }
+        return super.add(comment);
     }
 
     /**
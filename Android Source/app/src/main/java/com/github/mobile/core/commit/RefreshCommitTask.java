@@ -17,14 +17,14 @@ package com.github.mobile.core.commit;
 
 import android.accounts.Account;
 import android.content.Context;
+import android.os.Handler;
 import android.util.Log;
 
 import com.github.mobile.accounts.AuthenticatedUserTask;
-import com.github.mobile.util.HtmlUtils;
 import com.github.mobile.util.HttpImageGetter;
 import com.google.inject.Inject;
 
-import java.util.List;
+import java.util.Collection;
 
 import org.eclipse.egit.github.core.Commit;
 import org.eclipse.egit.github.core.CommitComment;
@@ -51,6 +51,8 @@ public class RefreshCommitTask extends AuthenticatedUserTask<FullCommit> {
 
     private final HttpImageGetter imageGetter;
 
+    private final Handler handler = new Handler();
+
     /**
      * @param context
      * @param repository
@@ -68,20 +70,42 @@ public class RefreshCommitTask extends AuthenticatedUserTask<FullCommit> {
 
     @Override
     protected FullCommit run(Account account) throws Exception {
+        // Show the copy stored by an earlier refresh while requesting
+        if (store.getCommit(repository, id) == null) {
+            final RepositoryCommit stored = store.loadCommit(repository, id);
+            if (stored != null)
+                handler.post(new Runnable() {
+
+                    @Override
+                    public void run() {
+                        onStoredCommitLoaded(stored);
+                    }
+                });
+        }
+
         RepositoryCommit commit = store.refreshCommit(repository, id);
+        FullCommit full = new FullCommit(commit);
         Commit rawCommit = commit.getCommit();
-        if (rawCommit != null && rawCommit.getCommentCount() > 0) {
-            List<CommitComment> comments = service.getComments(repository,
-                    commit.getSha());
-            for (CommitComment comment : comments) {
-                String formatted = HtmlUtils.format(comment.getBodyHtml())
-                        .toString();
-                comment.setBodyHtml(formatted);
-                imageGetter.encode(comment, formatted);
+        if (rawCommit != null && rawCommit.getCommentCount() > 0)
+            // Attach each page of comments as soon as it is loaded
+            for (Collection<CommitComment> comments : service.pageComments(
+                    repository, commit.getSha())) {
+                for (CommitComment comment : comments)
+                    imageGetter.encode(comment, comment.getBodyHtml());
+                full.addComments(comments);
             }
-            return new FullCommit(commit, comments);
-        } else
-            return new FullCommit(commit);
+        return full;
+    }
+
+    /**
+     * Called on the UI thread with the commit stored by an earlier refresh
+     * when it was not in memory, before the commit is refreshed
+     * <p>
+     * Sub-classes may override
+     *
+     * @param commit
+     */
+    protected void onStoredCommitLoaded(final RepositoryCommit commit) {
     }
 
     @Override
@@ -18,10 +18,16 @@ package com.github.mobile.core.gist;
 import static java.lang.String.CASE_INSENSITIVE_ORDER;
 
 import com.github.mobile.core.ItemStore;
+import com.github.mobile.persistence.ItemCache;
+import com.github.mobile.util.FutureUtils;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.FutureTask;
 
 import org.eclipse.egit.github.core.Gist;
 import org.eclipse.egit.github.core.GistFile;
@@ -34,15 +40,39 @@ public class GistStore extends ItemStore {
 
     private final ItemReferences<Gist> gists = new ItemReferences<Gist>();
 
+    /**
+     * Refreshes in progress by gist id
+     */
+    private final Map<String, FutureTask<Gist>> refreshing = new HashMap<String, FutureTask<Gist>>();
+
+    /**
+     * Known starred state by gist id
+     */
+    private final Map<String, Boolean> starred = new ConcurrentHashMap<String, Boolean>();
+
     private final GistService service;
 
+    private final ItemCache cache;
+
     /**
      * Create gist store
      *
      * @param service
      */
     public GistStore(final GistService service) {
+        this(service, null);
+    }
+
+    /**
+     * Create gist store backed by given cache
+     *
+     * @param service
+     * @param cache
+     *            cache of refreshed gists, may be null
+     */
+    public GistStore(final GistService service, final ItemCache cache) {
         this.service = service;
+        this.cache = cache;
     }
 
     /**
@@ -55,6 +85,35 @@ public class GistStore extends ItemStore {
         return gists.get(id);
     }
 
+    /**
+     * Get gist, reading it from the cache of refreshed gists if not in memory
+     * <p>
+     * This reads from disk and must not be called on the UI thread. The
+     * cached gist is only added if the gist was not stored in the meantime so
+     * it never overwrites a newer copy.
+     *
+     * @param id
+     * @return gist or null if neither in store nor cached
+     */
+    public Gist loadGist(String id) {
+        Gist gist = gists.get(id);
+        if (gist == null && cache != null) {
+            gist = cache.get(Gist.class, id);
+            if (gist != null) {
+                gist.setFiles(sortFiles(gist));
+                gist = gists.putIfAbsent(id, gist);
+            }
+        }
+        return gist;
+    }
+
+    private Gist storeGist(Gist gist) {
+        Gist stored = addGist(gist);
+        if (cache != null)
+            cache.put(Gist.class, stored.getId(), stored);
+        return stored;
+    }
+
     /**
      * Sort files in {@link Gist}
      *
@@ -79,7 +138,7 @@ public class GistStore extends ItemStore {
      * @return gist
      */
     public Gist addGist(Gist gist) {
-        Gist current = getGist(gist.getId());
+        Gist current = gists.get(gist.getId());
         if (current != null) {
             current.setComments(gist.getComments());
             current.setDescription(gist.getDescription());
@@ -95,13 +154,97 @@ public class GistStore extends ItemStore {
 
     /**
      * Refresh gist
+     * <p>
+     * Concurrent refreshes of the same gist share a single request
      *
      * @param id
      * @return refreshed gist
      * @throws IOException
      */
-    public Gist refreshGist(String id) throws IOException {
-        return addGist(service.getGist(id));
+    public Gist refreshGist(final String id) throws IOException {
+        FutureTask<Gist> refresh;
+        boolean requested = false;
+        synchronized (refreshing) {
+            refresh = refreshing.get(id);
+            if (refresh == null) {
+                refresh = new FutureTask<Gist>(new Callable<Gist>() {
+
+                    @Override
+                    public Gist call() throws Exception {
+                        return storeGist(service.getGist(id));
+                    }
+                });
+                refreshing.put(id, refresh);
+                requested = true;
+            }
+        }
+
+        if (requested)
+            try {
+                refresh.run();
+            } finally {
+                synchronized (refreshing) {
+                    refreshing.remove(id);
+                }
+            }
+
+        return FutureUtils.get(refresh);
+    }
+
+    /**
+     * Is gist starred by the current user?
+     * <p>
+     * The starred state is only requested if not already known
+     *
+     * @param id
+     * @return true if starred, false otherwise
+     * @throws IOException
+     */
+    public boolean isStarred(final String id) throws IOException {
+        return isStarred(id, false);
+    }
+
+    /**
+     * Is gist starred by the current user?
+     *
+     * @param id
+     * @param refresh
+     *            true to request the starred state even if already known
+     * @return true if starred, false otherwise
+     * @throws IOException
+     */
+    public boolean isStarred(final String id, final boolean refresh)
+            throws IOException {
+        Boolean isStarred = refresh ? null : starred.get(id);
+        if (isStarred == null) {
+            isStarred = service.isStarred(id);
+            starred.put(id, isStarred);
+        }
+        return isStarred;
+    }
+
+    /**
+     * Star gist
+     *
+     * @param id
+     * @throws IOException
+     */
+    public void starGist(final String id) throws IOException {
+        starred.remove(id);
+        service.starGist(id);
+        starred.put(id, true);
+    }
+
+    /**
+     * Unstar gist
+     *
+     * @param id
+     * @throws IOException
+     */
+    public void unstarGist(final String id) throws IOException {
+        starred.remove(id);
+        service.unstarGist(id);
+        starred.put(id, false);
     }
 
     /**
@@ -112,6 +255,6 @@ public class GistStore extends ItemStore {
      * @throws IOException
      */
     public Gist editGist(Gist gist) throws IOException {
-        return addGist(service.updateGist(gist));
+        return storeGist(service.updateGist(gist));
     }
 }
@@ -15,17 +15,20 @@
  */
 package com.github.mobile.core.gist;
 
+import static com.github.mobile.util.FutureUtils.get;
+import static com.github.mobile.util.FutureUtils.submit;
 import android.accounts.Account;
 import android.content.Context;
+import android.os.Handler;
 import android.util.Log;
 
 import com.github.mobile.accounts.AuthenticatedUserTask;
-import com.github.mobile.util.HtmlUtils;
 import com.github.mobile.util.HttpImageGetter;
 import com.google.inject.Inject;
 
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.eclipse.egit.github.core.Comment;
 import org.eclipse.egit.github.core.Gist;
@@ -33,6 +36,8 @@ import org.eclipse.egit.github.core.service.GistService;
 
 /**
  * Task to load and store a {@link Gist}
+ * <p>
+ * The gist, its comments and its starred state are requested concurrently
  */
 public class RefreshGistTask extends AuthenticatedUserTask<FullGist> {
 
@@ -48,6 +53,10 @@ public class RefreshGistTask extends AuthenticatedUserTask<FullGist> {
 
     private final HttpImageGetter imageGetter;
 
+    private final boolean forceRefresh;
+
+    private final Handler handler = new Handler();
+
     /**
      * Create task to refresh the given {@link Gist}
      *
@@ -57,27 +66,79 @@ public class RefreshGistTask extends AuthenticatedUserTask<FullGist> {
      */
     public RefreshGistTask(Context context, String gistId,
             HttpImageGetter imageGetter) {
+        this(context, gistId, imageGetter, false);
+    }
+
+    /**
+     * Create task to refresh the given {@link Gist}
+     *
+     * @param context
+     * @param gistId
+     * @param imageGetter
+     * @param forceRefresh
+     *            true to request state already known such as whether the gist
+     *            is starred
+     */
+    public RefreshGistTask(Context context, String gistId,
+            HttpImageGetter imageGetter, boolean forceRefresh) {
         super(context);
 
         id = gistId;
         this.imageGetter = imageGetter;
+        this.forceRefresh = forceRefresh;
     }
 
     @Override
     public FullGist run(Account account) throws Exception {
-        Gist gist = store.refreshGist(id);
-        List<Comment> comments;
-        if (gist.getComments() > 0)
-            comments = service.getComments(id);
-        else
-            comments = Collections.emptyList();
-        for (Comment comment : comments) {
-            String formatted = HtmlUtils.format(comment.getBodyHtml())
-                    .toString();
-            comment.setBodyHtml(formatted);
-            imageGetter.encode(comment, formatted);
+        Future<Gist> gist = submit(new Callable<Gist>() {
+
+            @Override
+            public Gist call() throws Exception {
+                return store.refreshGist(id);
+            }
+        });
+        Future<Boolean> starred = submit(new Callable<Boolean>() {
+
+            @Override
+            public Boolean call() throws Exception {
+                return store.isStarred(id, forceRefresh);
+            }
+        });
+
+        try {
+            // Show the copy stored by an earlier refresh while requesting
+            if (store.getGist(id) == null) {
+                final Gist stored = store.loadGist(id);
+                if (stored != null)
+                    handler.post(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            onStoredGistLoaded(stored);
+                        }
+                    });
+            }
+
+            // Comments may have been added since the gist was stored
+            List<Comment> comments = service.getComments(id);
+            for (Comment comment : comments)
+                imageGetter.encode(comment, comment.getBodyHtml());
+            return new FullGist(get(gist), get(starred), comments);
+        } finally {
+            gist.cancel(true);
+            starred.cancel(true);
         }
-        return new FullGist(gist, service.isStarred(id), comments);
+    }
+
+    /**
+     * Called on the UI thread with the gist stored by an earlier refresh when
+     * it was not in memory, before the gist is refreshed
+     * <p>
+     * Sub-classes may override
+     *
+     * @param gist
+     */
+    protected void onStoredGistLoaded(final Gist gist) {
     }
 
     @Override
@@ -23,7 +23,6 @@ import com.github.mobile.accounts.AuthenticatedUserTask;
 import com.google.inject.Inject;
 
 import org.eclipse.egit.github.core.Gist;
-import org.eclipse.egit.github.core.service.GistService;
 
 /**
  * Task to star a {@link Gist}
@@ -33,7 +32,7 @@ public class StarGistTask extends AuthenticatedUserTask<Gist> {
     private static final String TAG = "StarGistTask";
 
     @Inject
-    private GistService service;
+    private GistStore store;
 
     private final String id;
 
@@ -51,7 +50,7 @@ public class StarGistTask extends AuthenticatedUserTask<Gist> {
 
     @Override
     public Gist run(Account account) throws Exception {
-        service.starGist(id);
+        store.starGist(id);
         return null;
     }
 
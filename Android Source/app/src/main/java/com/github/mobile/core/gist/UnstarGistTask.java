@@ -23,7 +23,6 @@ import com.github.mobile.accounts.AuthenticatedUserTask;
 import com.google.inject.Inject;
 
 import org.eclipse.egit.github.core.Gist;
-import org.eclipse.egit.github.core.service.GistService;
 
 /**
  * Task to unstar a {@link Gist}
@@ -33,7 +32,7 @@ public class UnstarGistTask extends AuthenticatedUserTask<Gist> {
     private static final String TAG = "UnstarGistTask";
 
     @Inject
-    private GistService service;
+    private GistStore store;
 
     private final String id;
 
@@ -51,7 +50,7 @@ public class UnstarGistTask extends AuthenticatedUserTask<Gist> {
 
     @Override
     public Gist run(Account account) throws Exception {
-        service.unstarGist(id);
+        store.unstarGist(id);
         return null;
     }
 
@@ -104,16 +104,26 @@ public class IssueFilter implements Serializable, Cloneable, Comparator<Label> {
      */
     public IssueFilter setLabels(Collection<Label> labels) {
         if (labels != null && !labels.isEmpty()) {
-            if (this.labels == null)
-                this.labels = new TreeSet<Label>(this);
-            else
-                this.labels.clear();
-            this.labels.addAll(labels);
+            Set<Label> sorted = new TreeSet<Label>(this);
+            sorted.addAll(labels);
+            this.labels = sorted;
         } else
             this.labels = null;
         return this;
     }
 
+    /**
+     * Restore the sorted labels of a filter read back from JSON
+     * <p>
+     * Gson fills the labels field with a plain set that neither sorts nor
+     * compares names case-insensitively
+     *
+     * @return this filter
+     */
+    public IssueFilter normalize() {
+        return setLabels(labels);
+    }
+
     /**
      * @return labels
      */
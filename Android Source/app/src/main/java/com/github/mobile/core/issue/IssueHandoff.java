@@ -0,0 +1,159 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile.core.issue;
+
+import android.support.v4.util.LruCache;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.egit.github.core.Issue;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.RepositoryId;
+import org.eclipse.egit.github.core.RepositoryIssue;
+import org.eclipse.egit.github.core.User;
+
+/**
+ * In-process registry of the issue lists opened from another screen
+ * <p>
+ * Only a handle to a list crosses the intent boundary. The issues in a list
+ * are the instances already loaded and registered in {@link IssueStore} so
+ * nothing is copied or serialized. Lists do not survive the process so
+ * callers must be able to fall back to the single selected issue.
+ */
+public class IssueHandoff {
+
+    /**
+     * Maximum number of lists kept at once
+     */
+    private static final int MAX_LISTS = 4;
+
+    private static final AtomicLong NEXT_HANDLE = new AtomicLong(1);
+
+    private static final LruCache<Long, IssueHandoff> LISTS = new LruCache<Long, IssueHandoff>(
+            MAX_LISTS);
+
+    /**
+     * Register issues
+     *
+     * @param issues
+     * @return handle to the registered issues
+     */
+    public static long put(final Collection<? extends Issue> issues) {
+        long handle = NEXT_HANDLE.getAndIncrement();
+        LISTS.put(handle, new IssueHandoff(issues.toArray(new Issue[issues
+                .size()])));
+        return handle;
+    }
+
+    /**
+     * Get issues registered with handle
+     *
+     * @param handle
+     * @return issues or null if no longer registered
+     */
+    public static IssueHandoff get(final long handle) {
+        return LISTS.get(handle);
+    }
+
+    /**
+     * Get id of the repository an issue belongs to
+     *
+     * @param issue
+     * @return id
+     */
+    public static RepositoryId getRepositoryId(final Issue issue) {
+        if (issue instanceof RepositoryIssue) {
+            Repository repo = ((RepositoryIssue) issue).getRepository();
+            if (repo != null) {
+                User owner = repo.getOwner();
+                if (owner != null)
+                    return RepositoryId.create(owner.getLogin(),
+                            repo.getName());
+            }
+        }
+        return RepositoryId.createFromUrl(issue.getHtmlUrl());
+    }
+
+    private final Issue[] issues;
+
+    private final RepositoryId[] repoIds;
+
+    private IssueHandoff(final Issue[] issues) {
+        this.issues = issues;
+        repoIds = new RepositoryId[issues.length];
+    }
+
+    /**
+     * @return number of issues
+     */
+    public int size() {
+        return issues.length;
+    }
+
+    /**
+     * @return numbers of all issues
+     */
+    public int[] getNumbers() {
+        int[] numbers = new int[issues.length];
+        for (int i = 0; i < numbers.length; i++)
+            numbers[i] = issues[i].getNumber();
+        return numbers;
+    }
+
+    /**
+     * @return pull request flags of all issues
+     */
+    public boolean[] getPullRequests() {
+        boolean[] pullRequests = new boolean[issues.length];
+        for (int i = 0; i < pullRequests.length; i++)
+            pullRequests[i] = IssueUtils.isPullRequest(issues[i]);
+        return pullRequests;
+    }
+
+    /**
+     * Get repository ids of the issues
+     * <p>
+     * Ids are resolved as positions are first requested
+     *
+     * @return list of ids
+     */
+    public List<RepositoryId> getRepositoryIds() {
+        return new RepositoryIdList();
+    }
+
+    private class RepositoryIdList extends AbstractList<RepositoryId>
+            implements RandomAccess {
+
+        @Override
+        public RepositoryId get(final int location) {
+            RepositoryId id = repoIds[location];
+            if (id == null) {
+                id = getRepositoryId(issues[location]);
+                repoIds[location] = id;
+            }
+            return id;
+        }
+
+        @Override
+        public int size() {
+            return issues.length;
+        }
+    }
+}
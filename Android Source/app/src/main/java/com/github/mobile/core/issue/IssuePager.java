@@ -44,7 +44,7 @@ public abstract class IssuePager extends ResourcePager<Issue> {
     }
 
     @Override
-    protected Object getId(Issue resource) {
+    protected long getLongId(Issue resource) {
         return resource.getId();
     }
 }
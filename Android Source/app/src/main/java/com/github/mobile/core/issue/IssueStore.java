@@ -16,11 +16,11 @@
 package com.github.mobile.core.issue;
 
 import com.github.mobile.core.ItemStore;
-import com.github.mobile.util.HtmlUtils;
+import com.github.mobile.persistence.ItemCache;
 
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.egit.github.core.IRepositoryIdProvider;
 import org.eclipse.egit.github.core.Issue;
@@ -35,12 +35,14 @@ import org.eclipse.egit.github.core.service.PullRequestService;
  */
 public class IssueStore extends ItemStore {
 
-    private final Map<String, ItemReferences<RepositoryIssue>> repos = new HashMap<String, ItemReferences<RepositoryIssue>>();
+    private final ConcurrentMap<String, ItemReferences<RepositoryIssue>> repos = new ConcurrentHashMap<String, ItemReferences<RepositoryIssue>>();
 
     private final IssueService issueService;
 
     private final PullRequestService pullService;
 
+    private final ItemCache cache;
+
     /**
      * Create issue store
      *
@@ -49,8 +51,39 @@ public class IssueStore extends ItemStore {
      */
     public IssueStore(final IssueService issueService,
             final PullRequestService pullService) {
+        this(issueService, pullService, null);
+    }
+
+    /**
+     * Create issue store backed by given cache
+     *
+     * @param issueService
+     * @param pullService
+     * @param cache
+     *            cache of refreshed issues, may be null
+     */
+    public IssueStore(final IssueService issueService,
+            final PullRequestService pullService, final ItemCache cache) {
         this.issueService = issueService;
         this.pullService = pullService;
+        this.cache = cache;
+    }
+
+    private ItemReferences<RepositoryIssue> getReferences(final String repoId) {
+        ItemReferences<RepositoryIssue> repoIssues = repos.get(repoId);
+        if (repoIssues == null) {
+            repoIssues = new ItemReferences<RepositoryIssue>();
+            ItemReferences<RepositoryIssue> existing = repos.putIfAbsent(
+                    repoId, repoIssues);
+            if (existing != null)
+                repoIssues = existing;
+        }
+        return repoIssues;
+    }
+
+    private static String getCacheId(IRepositoryIdProvider repository,
+            int number) {
+        return repository.generateId() + '#' + number;
     }
 
     /**
@@ -66,6 +99,40 @@ public class IssueStore extends ItemStore {
         return repoIssues != null ? repoIssues.get(number) : null;
     }
 
+    /**
+     * Get issue, reading it from the cache of refreshed issues if not in
+     * memory
+     * <p>
+     * This reads from disk and must not be called on the UI thread. The
+     * cached issue is only added if the issue was not stored in the meantime
+     * so it never overwrites a newer copy.
+     *
+     * @param repository
+     * @param number
+     * @return issue or null if neither in store nor cached
+     */
+    public RepositoryIssue loadIssue(IRepositoryIdProvider repository,
+            int number) {
+        RepositoryIssue issue = getIssue(repository, number);
+        if (issue == null && cache != null) {
+            issue = cache.get(RepositoryIssue.class,
+                    getCacheId(repository, number));
+            if (issue != null)
+                issue = getReferences(repository.generateId()).putIfAbsent(
+                        number, issue);
+        }
+        return issue;
+    }
+
+    private RepositoryIssue storeIssue(IRepositoryIdProvider repository,
+            Issue issue) {
+        RepositoryIssue stored = addIssue(repository, issue);
+        if (cache != null)
+            cache.put(RepositoryIssue.class,
+                    getCacheId(repository, stored.getNumber()), stored);
+        return stored;
+    }
+
     /**
      * Add issue to store
      *
@@ -116,7 +183,6 @@ public class IssueStore extends ItemStore {
      */
     public RepositoryIssue addIssue(IRepositoryIdProvider repository,
             Issue issue) {
-        issue.setBodyHtml(HtmlUtils.format(issue.getBodyHtml()).toString());
         RepositoryIssue current = getIssue(repository, issue.getNumber());
         if (current != null) {
             current.setAssignee(issue.getAssignee());
@@ -134,14 +200,9 @@ public class IssueStore extends ItemStore {
                 current.setRepository(((RepositoryIssue) issue).getRepository());
             return current;
         } else {
-            String repoId = repository.generateId();
-            ItemReferences<RepositoryIssue> repoIssues = repos.get(repoId);
-            if (repoIssues == null) {
-                repoIssues = new ItemReferences<RepositoryIssue>();
-                repos.put(repoId, repoIssues);
-            }
             RepositoryIssue repoIssue = createRepositoryIssue(issue);
-            repoIssues.put(issue.getNumber(), repoIssue);
+            getReferences(repository.generateId()).put(issue.getNumber(),
+                    repoIssue);
             return repoIssue;
         }
     }
@@ -174,7 +235,7 @@ public class IssueStore extends ItemStore {
             else
                 throw e;
         }
-        return addIssue(repository, issue);
+        return storeIssue(repository, issue);
     }
 
     /**
@@ -187,6 +248,6 @@ public class IssueStore extends ItemStore {
      */
     public RepositoryIssue editIssue(IRepositoryIdProvider repository,
             Issue issue) throws IOException {
-        return addIssue(repository, issueService.editIssue(repository, issue));
+        return storeIssue(repository, issueService.editIssue(repository, issue));
     }
 }
@@ -15,29 +15,37 @@
  */
 package com.github.mobile.core.issue;
 
+import static com.github.mobile.util.FutureUtils.get;
+import static com.github.mobile.util.FutureUtils.submit;
 import android.accounts.Account;
 import android.content.Context;
+import android.os.Handler;
 import android.util.Log;
 
 import com.github.mobile.accounts.AuthenticatedUserTask;
-import com.github.mobile.util.HtmlUtils;
 import com.github.mobile.util.HttpImageGetter;
 import com.google.inject.Inject;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.eclipse.egit.github.core.Comment;
 import org.eclipse.egit.github.core.IRepositoryIdProvider;
 import org.eclipse.egit.github.core.Issue;
 import org.eclipse.egit.github.core.IssueEvent;
+import org.eclipse.egit.github.core.client.NoSuchPageException;
 import org.eclipse.egit.github.core.service.IssueService;
 
 /**
  * Task to load and store an {@link Issue}
+ * <p>
+ * The issue, its comments and its events are requested concurrently and each
+ * page of comments is passed to {@link #onCommentsLoaded(List)} as soon as it
+ * is loaded.
  */
 public class RefreshIssueTask extends AuthenticatedUserTask<FullIssue> {
 
@@ -57,6 +65,8 @@ public class RefreshIssueTask extends AuthenticatedUserTask<FullIssue> {
 
     private final HttpImageGetter commentImageGetter;
 
+    private final Handler handler = new Handler();
+
     /**
      * Create task to refresh given issue
      *
@@ -79,29 +89,121 @@ public class RefreshIssueTask extends AuthenticatedUserTask<FullIssue> {
 
     @Override
     public FullIssue run(Account account) throws Exception {
-        Issue issue = store.refreshIssue(repositoryId, issueNumber);
-        bodyImageGetter.encode(issue.getId(), issue.getBodyHtml());
-        List<Comment> comments;
-        if (issue.getComments() > 0)
-            comments = service.getComments(repositoryId, issueNumber);
-        else
-            comments = Collections.emptyList();
-
-        for (Comment comment : comments) {
-            String formatted = HtmlUtils.format(comment.getBodyHtml())
-                    .toString();
-            comment.setBodyHtml(formatted);
-            commentImageGetter.encode(comment.getId(), formatted);
+        final String[] repo = repositoryId.generateId().split("/");
+        Future<Issue> issueFuture = submit(new Callable<Issue>() {
+
+            @Override
+            public Issue call() throws Exception {
+                Issue issue = store.refreshIssue(repositoryId, issueNumber);
+                bodyImageGetter.encode(issue.getId(), issue.getBodyHtml());
+                return issue;
+            }
+        });
+        Future<List<IssueEvent>> eventsFuture = submit(
+                new Callable<List<IssueEvent>>() {
+
+                    @Override
+                    public List<IssueEvent> call() throws Exception {
+                        List<IssueEvent> events = new ArrayList<IssueEvent>();
+                        try {
+                            for (Collection<IssueEvent> page : service
+                                    .pageIssueEvents(repo[0], repo[1],
+                                            issueNumber))
+                                events.addAll(page);
+                        } catch (NoSuchPageException e) {
+                            throw e.getCause();
+                        }
+                        return events;
+                    }
+                });
+
+        try {
+            // Show the copy stored by an earlier refresh while requesting
+            if (store.getIssue(repositoryId, issueNumber) == null) {
+                final Issue stored = store.loadIssue(repositoryId,
+                        issueNumber);
+                if (stored != null)
+                    handler.post(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            onStoredIssueLoaded(stored);
+                        }
+                    });
+            }
+
+            List<Comment> comments = new ArrayList<Comment>();
+            try {
+                for (Collection<Comment> page : service.pageComments(repo[0],
+                        repo[1], issueNumber)) {
+                    encode(page);
+                    comments.addAll(page);
+                    publish(new ArrayList<Comment>(comments));
+                }
+            } catch (NoSuchPageException e) {
+                throw e.getCause();
+            }
+
+            return new FullIssue(get(issueFuture), comments, get(eventsFuture));
+        } finally {
+            issueFuture.cancel(true);
+            eventsFuture.cancel(true);
         }
+    }
+
+    /**
+     * Encode the HTML of the given comments in parallel
+     *
+     * @param comments
+     * @throws IOException
+     */
+    private void encode(final Collection<Comment> comments) throws IOException {
+        List<Future<Void>> futures = new ArrayList<Future<Void>>(
+                comments.size());
+        for (final Comment comment : comments)
+            futures.add(submit(new Callable<Void>() {
+
+                @Override
+                public Void call() throws Exception {
+                    commentImageGetter.encode(comment.getId(),
+                            comment.getBodyHtml());
+                    return null;
+                }
+            }));
+        for (Future<Void> future : futures)
+            get(future);
+    }
+
+    private void publish(final List<Comment> comments) {
+        handler.post(new Runnable() {
 
-        String[] repo = repositoryId.generateId().split("/");
-        Iterator<Collection<IssueEvent>> eventsIterator = service.pageIssueEvents(repo[0], repo[1], issueNumber).iterator();
-        List<IssueEvent> events = new ArrayList<>();
+            @Override
+            public void run() {
+                onCommentsLoaded(comments);
+            }
+        });
+    }
 
-        while (eventsIterator.hasNext())
-            events.addAll(eventsIterator.next());
+    /**
+     * Called on the UI thread with the issue stored by an earlier refresh when
+     * it was not in memory, before the issue is refreshed
+     * <p>
+     * Sub-classes may override
+     *
+     * @param issue
+     */
+    protected void onStoredIssueLoaded(final Issue issue) {
+    }
 
-        return new FullIssue(issue, comments, events);
+    /**
+     * Called on the UI thread with all the comments loaded so far, before the
+     * issue and its events may be loaded
+     * <p>
+     * Sub-classes may override
+     *
+     * @param comments
+     */
+    protected void onCommentsLoaded(final List<Comment> comments) {
     }
 
     @Override
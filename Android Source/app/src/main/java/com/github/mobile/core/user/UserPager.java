@@ -25,7 +25,7 @@ import org.eclipse.egit.github.core.User;
 public abstract class UserPager extends ResourcePager<User> {
 
     @Override
-    protected Object getId(User resource) {
+    protected long getLongId(User resource) {
         return resource.getId();
     }
 }
@@ -22,12 +22,14 @@ import android.database.sqlite.SQLiteOpenHelper;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.util.Log;
 
+import com.github.mobile.RequestCodec;
 import com.github.mobile.RequestFuture;
 import com.github.mobile.RequestReader;
 import com.github.mobile.RequestWriter;
 import com.github.mobile.accounts.AuthenticatedUserTask;
 import com.github.mobile.core.issue.IssueFilter;
 import com.github.mobile.persistence.OrganizationRepositories.Factory;
+import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 
@@ -59,6 +61,10 @@ public class AccountDataManager {
      */
     private static final int FORMAT_VERSION = 4;
 
+    private static final RequestCodec FILTERS_CODEC = RequestCodec
+            .json(new TypeToken<HashSet<IssueFilter>>() {
+            }.getType());
+
     @Inject
     private Context context;
 
@@ -86,13 +92,14 @@ public class AccountDataManager {
      * Read data from file
      *
      * @param file
+     * @param codec
      * @return data
      */
     @SuppressWarnings("unchecked")
-    private <V> V read(final File file) {
+    private <V> V read(final File file, final RequestCodec codec) {
         long start = System.currentTimeMillis();
         long length = file.length();
-        Object data = new RequestReader(file, FORMAT_VERSION).read();
+        Object data = new RequestReader(file, FORMAT_VERSION, codec).read();
         if (data != null)
             Log.d(TAG, MessageFormat.format(
                     "Cache hit to {0}, {1} ms to load {2} bytes",
@@ -105,11 +112,13 @@ public class AccountDataManager {
      * Write data to file
      *
      * @param file
+     * @param codec
      * @param data
      * @return this manager
      */
-    private AccountDataManager write(File file, Object data) {
-        new RequestWriter(file, FORMAT_VERSION).write(data);
+    private AccountDataManager write(File file, RequestCodec codec,
+            Object data) {
+        new RequestWriter(file, FORMAT_VERSION, codec).write(data);
         return this;
     }
 
@@ -178,6 +187,25 @@ public class AccountDataManager {
                 .loadOrRequest(resource);
     }
 
+    private File getIssueFiltersFile() {
+        File cache = new File(root, "issue_filters.json");
+        File legacy = new File(root, "issue_filters.ser");
+        if (!cache.exists() && legacy.exists() && !legacy.renameTo(cache))
+            Log.d(TAG, "Unable to rename " + legacy.getName());
+        return cache;
+    }
+
+    private Collection<IssueFilter> readIssueFilters(final File cache) {
+        Collection<IssueFilter> read = read(cache, FILTERS_CODEC);
+        if (read == null)
+            return null;
+        Collection<IssueFilter> filters = new HashSet<IssueFilter>(
+                read.size());
+        for (IssueFilter filter : read)
+            filters.add(filter.normalize());
+        return filters;
+    }
+
     /**
      * Get bookmarked issue filters
      * <p/>
@@ -187,8 +215,8 @@ public class AccountDataManager {
      * @return non-null but possibly empty collection of issue filters
      */
     public Collection<IssueFilter> getIssueFilters() {
-        final File cache = new File(root, "issue_filters.ser");
-        Collection<IssueFilter> cached = read(cache);
+        final File cache = getIssueFiltersFile();
+        Collection<IssueFilter> cached = readIssueFilters(cache);
         if (cached != null)
             return cached;
         return Collections.emptyList();
@@ -226,12 +254,12 @@ public class AccountDataManager {
      * @param filter
      */
     public void addIssueFilter(IssueFilter filter) {
-        final File cache = new File(root, "issue_filters.ser");
-        Collection<IssueFilter> filters = read(cache);
+        final File cache = getIssueFiltersFile();
+        Collection<IssueFilter> filters = readIssueFilters(cache);
         if (filters == null)
             filters = new HashSet<IssueFilter>();
         if (filters.add(filter))
-            write(cache, filters);
+            write(cache, FILTERS_CODEC, filters);
     }
 
     /**
@@ -271,10 +299,10 @@ public class AccountDataManager {
      * @param filter
      */
     public void removeIssueFilter(IssueFilter filter) {
-        final File cache = new File(root, "issue_filters.ser");
-        Collection<IssueFilter> filters = read(cache);
+        final File cache = getIssueFiltersFile();
+        Collection<IssueFilter> filters = readIssueFilters(cache);
         if (filters != null && filters.remove(filter))
-            write(cache, filters);
+            write(cache, FILTERS_CODEC, filters);
     }
 
     /**
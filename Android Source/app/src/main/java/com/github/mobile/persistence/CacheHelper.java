@@ -20,16 +20,22 @@ import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 
 /**
  * Helper class to create & upgrade database cache tables
+ * <p>
+ * A single helper is shared by the whole process and is never closed so the
+ * database is only opened once. Write-ahead logging is enabled so reads from
+ * the UI do not block on writes done by a sync.
  */
+@Singleton
 public class CacheHelper extends SQLiteOpenHelper {
 
     /**
      * Version constant to increment when the database should be rebuilt
      */
-    private static final int VERSION = 8;
+    private static final int VERSION = 11;
 
     /**
      * Name of database file
@@ -41,14 +47,24 @@ public class CacheHelper extends SQLiteOpenHelper {
      */
     @Inject
     public CacheHelper(final Context context) {
-        super(context, NAME, null, VERSION);
+        super(context.getApplicationContext(), NAME, null, VERSION);
+    }
+
+    @Override
+    public void onOpen(final SQLiteDatabase db) {
+        super.onOpen(db);
+
+        if (!db.isReadOnly())
+            db.enableWriteAheadLogging();
     }
 
     @Override
     public void onCreate(final SQLiteDatabase db) {
         db.execSQL("CREATE TABLE orgs (id INTEGER PRIMARY KEY);");
         db.execSQL("CREATE TABLE users (id INTEGER PRIMARY KEY, name TEXT, avatarurl TEXT);");
-        db.execSQL("CREATE TABLE repos (id INTEGER PRIMARY KEY, repoId INTEGER, orgId INTEGER, name TEXT, ownerId INTEGER, private INTEGER, fork INTEGER, description TEXT, forks INTEGER, watchers INTEGER, language TEXT, hasIssues INTEGER, mirrorUrl TEXT);");
+        db.execSQL("CREATE TABLE repos (id INTEGER PRIMARY KEY, repoId INTEGER, orgId INTEGER, name TEXT, ownerId INTEGER, private INTEGER, fork INTEGER, description TEXT, forks INTEGER, watchers INTEGER, language TEXT, hasIssues INTEGER, mirrorUrl TEXT, updatedAt INTEGER);");
+        db.execSQL("CREATE INDEX repos_orgId ON repos (orgId);");
+        db.execSQL("CREATE TABLE stored (resource TEXT PRIMARY KEY, storedAt INTEGER);");
     }
 
     @Override
@@ -57,6 +73,8 @@ public class CacheHelper extends SQLiteOpenHelper {
         db.execSQL("DROP TABLE IF EXISTS orgs");
         db.execSQL("DROP TABLE IF EXISTS users");
         db.execSQL("DROP TABLE IF EXISTS repos");
+        db.execSQL("DROP TABLE IF EXISTS syncs");
+        db.execSQL("DROP TABLE IF EXISTS stored");
         onCreate(db);
     }
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile.persistence;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.util.Log;
+
+import com.github.mobile.ThrowableLoader;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loader of a {@link PersistableResource} that returns stored items right away
+ * and revalidates them in the background once they are older than the
+ * resource's time to live
+ * <p>
+ * The revalidated items are delivered as a second result to the same loader
+ * callbacks. A failed revalidation delivers the stored items again and is not
+ * reported as an error.
+ *
+ * @param <E>
+ */
+public abstract class CachedResourceLoader<E> extends
+        ThrowableLoader<List<E>> {
+
+    private static final String TAG = "CachedResourceLoader";
+
+    private final DatabaseCache cache;
+
+    private final boolean forceRefresh;
+
+    private volatile boolean revalidate;
+
+    private volatile long dataAge = -1;
+
+    private volatile long revalidationTime = -1;
+
+    /**
+     * Stored items delivered before the revalidation
+     */
+    private volatile List<E> stored;
+
+    /**
+     * Create loader
+     *
+     * @param context
+     * @param data
+     *            initial data
+     * @param cache
+     * @param forceRefresh
+     *            true to skip the stored items and request fresh ones
+     */
+    public CachedResourceLoader(final Context context, final List<E> data,
+            final DatabaseCache cache, final boolean forceRefresh) {
+        super(context, data);
+
+        this.cache = cache;
+        this.forceRefresh = forceRefresh;
+    }
+
+    /**
+     * Get resource to load
+     *
+     * @return resource or null if there is nothing to load
+     */
+    protected abstract PersistableResource<E> getResource();
+
+    /**
+     * Process loaded items before they are delivered
+     * <p>
+     * Sub-classes may override to sort or decorate the items
+     *
+     * @param items
+     * @return items
+     */
+    protected List<E> process(final List<E> items) {
+        return items;
+    }
+
+    /**
+     * Get age of the last delivered items
+     *
+     * @return age in milliseconds, 0 for freshly requested items or -1 if
+     *         unknown
+     */
+    public long getDataAge() {
+        return dataAge;
+    }
+
+    /**
+     * Get time taken by the last background revalidation
+     *
+     * @return time in milliseconds or -1 if no revalidation has completed
+     */
+    public long getRevalidationTime() {
+        return revalidationTime;
+    }
+
+    @Override
+    public List<E> loadData() throws Exception {
+        PersistableResource<E> resource = getResource();
+        if (resource == null)
+            return Collections.emptyList();
+
+        if (revalidate) {
+            revalidate = false;
+            long start = System.currentTimeMillis();
+            List<E> items;
+            try {
+                items = cache.requestAndStore(resource);
+            } catch (IOException e) {
+                // Keep showing the stored items without reporting an error
+                Log.d(TAG, "Exception revalidating " + resource, e);
+                return stored;
+            } catch (SQLException e) {
+                Log.d(TAG, "Exception revalidating " + resource, e);
+                return stored;
+            }
+            revalidationTime = System.currentTimeMillis() - start;
+            dataAge = 0;
+            Log.d(TAG, "Revalidated " + resource + " in " + revalidationTime
+                    + " ms");
+            return process(items);
+        }
+
+        if (!forceRefresh) {
+            List<E> items = cache.load(resource);
+            if (items != null) {
+                dataAge = cache.getAge(resource);
+                revalidate = dataAge < 0
+                        || dataAge > resource.getTimeToLive();
+                Log.d(TAG, "Showing " + items.size() + " stored items for "
+                        + resource + " that are " + dataAge + " ms old");
+                stored = process(items);
+                return stored;
+            }
+        }
+
+        dataAge = 0;
+        return process(cache.requestAndStore(resource));
+    }
+
+    @Override
+    public void deliverResult(final List<E> data) {
+        super.deliverResult(data);
+
+        if (revalidate && isStarted())
+            onContentChanged();
+    }
+}
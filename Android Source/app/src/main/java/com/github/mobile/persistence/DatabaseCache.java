@@ -15,6 +15,7 @@
  */
 package com.github.mobile.persistence;
 
+import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
@@ -31,6 +32,8 @@ import java.util.List;
 /**
  * Given a PersistableResource, this class will take support loading/storing
  * it's data or requesting fresh data, as appropriate.
+ * <p>
+ * The {@link CacheHelper} is shared and stays open between requests.
  */
 public class DatabaseCache {
 
@@ -87,16 +90,48 @@ public class DatabaseCache {
     public <E> List<E> loadOrRequest(PersistableResource<E> persistableResource)
             throws IOException {
         SQLiteOpenHelper helper = helperProvider.get();
+        long start = System.currentTimeMillis();
+        List<E> items = loadFromDB(helper, persistableResource);
+        if (items != null) {
+            Log.d(TAG, "CACHE HIT: Found " + items.size() + " items for "
+                    + persistableResource + " in "
+                    + (System.currentTimeMillis() - start) + " ms");
+            return items;
+        }
+        return requestAndStore(helper, persistableResource);
+    }
+
+    /**
+     * Load given resources from the database only
+     *
+     * @param persistableResource
+     * @return resources or null if none are stored
+     */
+    public <E> List<E> load(PersistableResource<E> persistableResource) {
+        return loadFromDB(helperProvider.get(), persistableResource);
+    }
+
+    /**
+     * Get time elapsed since given resources were last stored
+     *
+     * @param persistableResource
+     * @return age in milliseconds or -1 if never stored
+     */
+    public long getAge(PersistableResource<?> persistableResource) {
+        final SQLiteDatabase db = getReadable(helperProvider.get());
+        if (db == null)
+            return -1;
+
+        Cursor cursor = db.query("stored", new String[] { "storedAt" },
+                "resource=?", new String[] { persistableResource.toString() },
+                null, null, null);
         try {
-            List<E> items = loadFromDB(helper, persistableResource);
-            if (items != null) {
-                Log.d(TAG, "CACHE HIT: Found " + items.size() + " items for "
-                        + persistableResource);
-                return items;
-            }
-            return requestAndStore(helper, persistableResource);
+            if (!cursor.moveToFirst())
+                return -1;
+            return Math.max(0,
+                    System.currentTimeMillis() - cursor.getLong(0));
         } finally {
-            helper.close();
+            cursor.close();
         }
     }
 
@@ -109,19 +144,33 @@ public class DatabaseCache {
      */
     public <E> List<E> requestAndStore(
             PersistableResource<E> persistableResource) throws IOException {
-        SQLiteOpenHelper helper = helperProvider.get();
-        try {
-            return requestAndStore(helper, persistableResource);
-        } finally {
-            helper.close();
-        }
+        return requestAndStore(helperProvider.get(), persistableResource);
+    }
+
+    /**
+     * Store already requested items of given resource
+     * <p>
+     * This allows the request and the write to happen on different threads
+     *
+     * @param persistableResource
+     * @param items
+     * @return items
+     */
+    public <E> List<E> store(PersistableResource<E> persistableResource,
+            List<E> items) {
+        return store(helperProvider.get(), persistableResource, items);
     }
 
     private <E> List<E> requestAndStore(final SQLiteOpenHelper helper,
             final PersistableResource<E> persistableResource)
             throws IOException {
-        final List<E> items = persistableResource.request();
+        return store(helper, persistableResource,
+                persistableResource.request());
+    }
 
+    private <E> List<E> store(final SQLiteOpenHelper helper,
+            final PersistableResource<E> persistableResource,
+            final List<E> items) {
         final SQLiteDatabase db = getWritable(helper);
         if (db == null)
             return items;
@@ -129,6 +178,12 @@ public class DatabaseCache {
         db.beginTransaction();
         try {
             persistableResource.store(db, items);
+
+            ContentValues values = new ContentValues(2);
+            values.put("resource", persistableResource.toString());
+            values.put("storedAt", System.currentTimeMillis());
+            db.replace("stored", null, values);
+
             db.setTransactionSuccessful();
         } finally {
             db.endTransaction();
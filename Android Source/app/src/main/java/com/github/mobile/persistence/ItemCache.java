@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile.persistence;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.github.mobile.accounts.AccountUtils;
+import com.github.mobile.util.DiskCache;
+import com.google.gson.JsonParseException;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.egit.github.core.client.GsonUtils;
+
+/**
+ * Size-bounded cache of items stored on disk as JSON
+ * <p>
+ * Items are stored the same way they are received from the API so they can
+ * be displayed after the process is restarted while they are refreshed.
+ */
+public class ItemCache {
+
+    private static final String TAG = "ItemCache";
+
+    /**
+     * Format version to bump when the stored format changes, entries stored
+     * with other versions are never read and are eventually evicted
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    private final DiskCache cache;
+
+    private final Context context;
+
+    /**
+     * Create cache of items in given directory
+     *
+     * @param dir
+     * @param maxSize
+     *            maximum size in bytes of all stored items
+     */
+    public ItemCache(final File dir, final long maxSize) {
+        this(dir, maxSize, null);
+    }
+
+    /**
+     * Create cache of items in given directory stored separately for each
+     * account
+     *
+     * @param dir
+     * @param maxSize
+     *            maximum size in bytes of all stored items
+     * @param context
+     *            context used to get the login of the configured account,
+     *            may be null to share items between accounts
+     */
+    public ItemCache(final File dir, final long maxSize, final Context context) {
+        cache = new DiskCache(dir, maxSize);
+        this.context = context;
+    }
+
+    private String getKey(final String type, final String id) {
+        // Items of private repositories must not be visible to other accounts
+        String login = context != null ? AccountUtils.getLogin(context) : "";
+        return DiskCache.getKey(FORMAT_VERSION + ":" + login + ":" + type
+                + ":" + id);
+    }
+
+    /**
+     * Get stored item
+     *
+     * @param type
+     * @param id
+     * @return item or null if not stored or unreadable
+     */
+    public <V> V get(final Class<V> type, final String id) {
+        long start = System.currentTimeMillis();
+        try {
+            String json = cache.getString(getKey(type.getName(), id));
+            if (json == null)
+                return null;
+
+            V item = GsonUtils.fromJson(json, type);
+            Log.d(TAG, "Loaded " + type.getSimpleName() + " " + id + " in "
+                    + (System.currentTimeMillis() - start) + "ms");
+            return item;
+        } catch (IOException e) {
+            Log.d(TAG, "Exception reading stored item", e);
+            return null;
+        } catch (JsonParseException e) {
+            Log.d(TAG, "Exception parsing stored item", e);
+            return null;
+        }
+    }
+
+    /**
+     * Store item
+     *
+     * @param type
+     * @param id
+     * @param item
+     */
+    public <V> void put(final Class<V> type, final String id, final V item) {
+        try {
+            cache.put(getKey(type.getName(), id),
+                    GsonUtils.toJson(item));
+        } catch (IOException e) {
+            Log.d(TAG, "Exception storing item", e);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile.persistence;
+
+import android.util.Log;
+
+import com.github.mobile.util.DiskCache;
+import com.github.mobile.util.HttpImageGetter.HtmlCache;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.egit.github.core.IRepositoryIdProvider;
+
+/**
+ * Cache of markdown rendered by the API
+ * <p>
+ * Rendered HTML is stored on disk and encoded text is kept in memory, both
+ * by a digest of the raw text and everything else the rendering depends on
+ * so an entry never needs to be invalidated. Encoded text is weighted by the
+ * bitmaps of its images as well as its length.
+ */
+public class MarkdownCache {
+
+    private static final String TAG = "MarkdownCache";
+
+    /**
+     * Format version to bump when the stored format changes
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Get key of markdown rendered in mode and repository
+     *
+     * @param repository
+     *            may be null
+     * @param mode
+     * @param raw
+     * @return key
+     */
+    public static String getKey(final IRepositoryIdProvider repository,
+            final String mode, final String raw) {
+        String id = repository != null ? repository.generateId() : "";
+        return DiskCache.getKey(FORMAT_VERSION + ":" + id + ":" + mode + ":"
+                + raw);
+    }
+
+    private final DiskCache html;
+
+    private final HtmlCache encoded;
+
+    /**
+     * Create cache storing rendered HTML in given directory
+     *
+     * @param dir
+     * @param maxSize
+     *            maximum size in bytes of the stored HTML
+     * @param memorySize
+     *            maximum size in bytes of the encoded text kept in memory
+     */
+    public MarkdownCache(final File dir, final long maxSize,
+            final int memorySize) {
+        html = new DiskCache(dir, maxSize);
+        encoded = new HtmlCache(memorySize);
+    }
+
+    /**
+     * Get rendered HTML
+     *
+     * @param key
+     * @return HTML or null if not stored
+     */
+    public String getHtml(final String key) {
+        try {
+            return html.getString(key);
+        } catch (IOException e) {
+            Log.d(TAG, "Exception reading rendered markdown", e);
+            return null;
+        }
+    }
+
+    /**
+     * Store rendered HTML
+     *
+     * @param key
+     * @param rendered
+     */
+    public void putHtml(final String key, final String rendered) {
+        try {
+            html.put(key, rendered);
+        } catch (IOException e) {
+            Log.d(TAG, "Exception storing rendered markdown", e);
+        }
+    }
+
+    /**
+     * Get encoded text
+     *
+     * @param key
+     * @return text or null if not cached
+     */
+    public CharSequence getEncoded(final String key) {
+        return encoded.get(key);
+    }
+
+    /**
+     * Cache encoded text
+     *
+     * @param key
+     * @param text
+     */
+    public void putEncoded(final String key, final CharSequence text) {
+        encoded.put(key, text);
+    }
+}
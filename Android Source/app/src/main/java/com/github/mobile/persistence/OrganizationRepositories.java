@@ -15,10 +15,11 @@
  */
 package com.github.mobile.persistence;
 
-import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
 
 import com.github.mobile.accounts.GitHubAccount;
 import com.google.inject.Inject;
@@ -26,14 +27,22 @@ import com.google.inject.Provider;
 import com.google.inject.assistedinject.Assisted;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
 import org.eclipse.egit.github.core.Repository;
 import org.eclipse.egit.github.core.User;
+import org.eclipse.egit.github.core.client.NoSuchPageException;
+import org.eclipse.egit.github.core.client.PageIterator;
 import org.eclipse.egit.github.core.service.RepositoryService;
 import org.eclipse.egit.github.core.service.WatcherService;
 
@@ -43,6 +52,28 @@ import org.eclipse.egit.github.core.service.WatcherService;
 public class OrganizationRepositories implements
         PersistableResource<Repository> {
 
+    private static final String TAG = "OrganizationRepositories";
+
+    /**
+     * Time stored repositories are considered fresh
+     */
+    private static final long TIME_TO_LIVE = 30 * 60 * 1000;
+
+    /**
+     * Query of the repositories under an organization
+     * <p>
+     * The SQL is built once so every load reuses the statement already
+     * prepared in the database connection's statement cache
+     */
+    private static final String QUERY = SQLiteQueryBuilder.buildQueryString(
+            false, "repos JOIN users ON (repos.ownerId = users.id)",
+            new String[] { "repos.repoId, repos.name", "users.id",
+                    "users.name", "users.avatarurl", "repos.private",
+                    "repos.fork", "repos.description", "repos.forks",
+                    "repos.watchers", "repos.language", "repos.hasIssues",
+                    "repos.mirrorUrl" }, "repos.orgId=?", null, null, null,
+            null);
+
     /**
      * Creation factory
      */
@@ -85,16 +116,8 @@ public class OrganizationRepositories implements
 
     @Override
     public Cursor getCursor(SQLiteDatabase readableDatabase) {
-        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
-        builder.setTables("repos JOIN users ON (repos.ownerId = users.id)");
-        return builder.query(readableDatabase, new String[] {
-                "repos.repoId, repos.name", "users.id", "users.name",
-                "users.avatarurl", "repos.private", "repos.fork",
-                "repos.description", "repos.forks", "repos.watchers",
-                "repos.language", "repos.hasIssues", "repos.mirrorUrl" },
-                "repos.orgId=?",
-                new String[] { Integer.toString(org.getId()) }, null, null,
-                null);
+        return readableDatabase.rawQuery(QUERY,
+                new String[] { Integer.toString(org.getId()) });
     }
 
     @Override
@@ -123,39 +146,112 @@ public class OrganizationRepositories implements
 
     @Override
     public void store(SQLiteDatabase db, List<Repository> repos) {
-        db.delete("repos", "orgId=?",
-                new String[] { Integer.toString(org.getId()) });
-        if (repos.isEmpty())
-            return;
-
-        ContentValues values = new ContentValues(12);
-        for (Repository repo : repos) {
-            values.clear();
-
-            User owner = repo.getOwner();
-            values.put("repoId", repo.getId());
-            values.put("name", repo.getName());
-            values.put("orgId", org.getId());
-            values.put("ownerId", owner.getId());
-            values.put("private", repo.isPrivate() ? 1 : 0);
-            values.put("fork", repo.isFork() ? 1 : 0);
-            values.put("description", repo.getDescription());
-            values.put("forks", repo.getForks());
-            values.put("watchers", repo.getWatchers());
-            values.put("language", repo.getLanguage());
-            values.put("hasIssues", repo.isHasIssues() ? 1 : 0);
-            values.put("mirrorUrl", repo.getMirrorUrl());
-            db.replace("repos", null, values);
-
-            values.clear();
-
-            values.put("id", owner.getId());
-            values.put("name", owner.getLogin());
-            values.put("avatarurl", owner.getAvatarUrl());
-            db.replace("users", null, values);
+        final String[] orgArgs = new String[] { Integer.toString(org.getId()) };
+
+        // Map of repository id to stored row id and update time
+        final Map<Long, long[]> stored = new HashMap<Long, long[]>();
+        Cursor cursor = db.query("repos", new String[] { "id", "repoId",
+                "updatedAt" }, "orgId=?", orgArgs, null, null, null);
+        try {
+            while (cursor.moveToNext())
+                stored.put(cursor.getLong(1), new long[] { cursor.getLong(0),
+                        cursor.getLong(2) });
+        } finally {
+            cursor.close();
+        }
+
+        SQLiteStatement insert = db.compileStatement("INSERT INTO repos"
+                + " (name, ownerId, private, fork, description, forks,"
+                + " watchers, language, hasIssues, mirrorUrl, updatedAt,"
+                + " repoId, orgId) VALUES (?,?,?,?,?,?,?,?,?,?,?,?,?)");
+        SQLiteStatement update = db.compileStatement("UPDATE repos SET"
+                + " name=?, ownerId=?, private=?, fork=?, description=?,"
+                + " forks=?, watchers=?, language=?, hasIssues=?,"
+                + " mirrorUrl=?, updatedAt=? WHERE id=?");
+        SQLiteStatement owner = db.compileStatement("INSERT OR REPLACE"
+                + " INTO users (id, name, avatarurl) VALUES (?,?,?)");
+        SQLiteStatement delete = db
+                .compileStatement("DELETE FROM repos WHERE id=?");
+        try {
+            final Set<Integer> owners = new HashSet<Integer>();
+            final Set<Long> seen = new HashSet<Long>();
+            int inserted = 0;
+            int updated = 0;
+            for (Repository repo : repos) {
+                // Pages may shift while requested and repeat a repository
+                if (!seen.add(repo.getId()))
+                    continue;
+
+                // Owners are written for every repository since a login or
+                // avatar change does not change the repository's update time
+                User user = repo.getOwner();
+                if (owners.add(user.getId())) {
+                    owner.bindLong(1, user.getId());
+                    bind(owner, 2, user.getLogin());
+                    bind(owner, 3, user.getAvatarUrl());
+                    owner.execute();
+                }
+
+                final long updatedAt = getUpdatedAt(repo);
+                long[] row = stored.remove(repo.getId());
+                if (row == null) {
+                    bind(insert, repo, updatedAt);
+                    insert.bindLong(12, repo.getId());
+                    insert.bindLong(13, org.getId());
+                    insert.executeInsert();
+                    inserted++;
+                } else if (row[1] != updatedAt) {
+                    bind(update, repo, updatedAt);
+                    update.bindLong(12, row[0]);
+                    update.execute();
+                    updated++;
+                }
+            }
+
+            for (long[] row : stored.values()) {
+                delete.bindLong(1, row[0]);
+                delete.execute();
+            }
+
+            Log.d(TAG, MessageFormat.format(
+                    "Stored {0}: {1} inserted, {2} updated, {3} deleted",
+                    org.getLogin(), inserted, updated, stored.size()));
+        } finally {
+            insert.close();
+            update.close();
+            owner.close();
+            delete.close();
         }
     }
 
+    private static long getUpdatedAt(final Repository repo) {
+        final Date updatedAt = repo.getUpdatedAt();
+        return updatedAt != null ? updatedAt.getTime() : 0;
+    }
+
+    private static void bind(final SQLiteStatement statement,
+            final Repository repo, final long updatedAt) {
+        bind(statement, 1, repo.getName());
+        statement.bindLong(2, repo.getOwner().getId());
+        statement.bindLong(3, repo.isPrivate() ? 1 : 0);
+        statement.bindLong(4, repo.isFork() ? 1 : 0);
+        bind(statement, 5, repo.getDescription());
+        statement.bindLong(6, repo.getForks());
+        statement.bindLong(7, repo.getWatchers());
+        bind(statement, 8, repo.getLanguage());
+        statement.bindLong(9, repo.isHasIssues() ? 1 : 0);
+        bind(statement, 10, repo.getMirrorUrl());
+        statement.bindLong(11, updatedAt);
+    }
+
+    private static void bind(final SQLiteStatement statement,
+            final int index, final String value) {
+        if (value != null)
+            statement.bindString(index, value);
+        else
+            statement.bindNull(index);
+    }
+
     @Override
     public List<Repository> request() throws IOException {
         if (isAuthenticatedUser()) {
@@ -174,17 +270,47 @@ public class OrganizationRepositories implements
                             return 0;
                         }
                     });
-            all.addAll(repos.getRepositories());
-            all.addAll(watcher.getWatched());
+            all.addAll(getAll(repos.pageRepositories()));
+            all.addAll(getAll(watcher.pageWatched()));
             return new ArrayList<Repository>(all);
         } else
-            return repos.getOrgRepositories(org.getLogin());
+            return getAll(repos.pageOrgRepositories(org.getLogin()));
+    }
+
+    /**
+     * Get all pages of given iterator
+     * <p>
+     * The calling thread being interrupted is checked between pages so a
+     * cancelled sync stops requesting further pages
+     *
+     * @param iterator
+     * @return all elements
+     * @throws IOException
+     */
+    private static <V> List<V> getAll(final PageIterator<V> iterator)
+            throws IOException {
+        final List<V> all = new ArrayList<V>();
+        try {
+            while (iterator.hasNext()) {
+                if (Thread.interrupted())
+                    throw new InterruptedIOException("Request cancelled");
+                all.addAll(iterator.next());
+            }
+        } catch (NoSuchPageException e) {
+            throw e.getCause();
+        }
+        return all;
     }
 
     private boolean isAuthenticatedUser() {
         return org.getLogin().equals(accountProvider.get().getUsername());
     }
 
+    @Override
+    public long getTimeToLive() {
+        return TIME_TO_LIVE;
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + '[' + org.getLogin() + ']';
@@ -35,6 +35,11 @@ import org.eclipse.egit.github.core.service.UserService;
  */
 public class Organizations implements PersistableResource<User> {
 
+    /**
+     * Time stored organizations are considered fresh
+     */
+    private static final long TIME_TO_LIVE = 24 * 60 * 60 * 1000;
+
     private final UserService userService;
 
     private final OrganizationService orgService;
@@ -98,4 +103,14 @@ public class Organizations implements PersistableResource<User> {
         all.addAll(orgs);
         return all;
     }
+
+    @Override
+    public long getTimeToLive() {
+        return TIME_TO_LIVE;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
 }
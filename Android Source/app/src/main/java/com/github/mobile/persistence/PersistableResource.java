@@ -24,6 +24,9 @@ import java.util.List;
 /**
  * Describes how to store, load or request-an-update-for a particular set of
  * data.
+ * <p>
+ * The {@link #toString()} value identifies the stored data and must be stable
+ * across processes.
  *
  * @param <E>
  *            type of item
@@ -59,4 +62,14 @@ public interface PersistableResource<E> {
      * @throws IOException
      */
     List<E> request() throws IOException;
+
+    /**
+     * Get how long stored items are considered fresh
+     * <p>
+     * Stored items older than this are still shown but revalidated in the
+     * background by {@link CachedResourceLoader}
+     *
+     * @return time to live in milliseconds
+     */
+    long getTimeToLive();
 }
@@ -19,6 +19,7 @@ import android.content.SyncResult;
 import android.database.SQLException;
 import android.util.Log;
 
+import com.github.mobile.OkHttpConnectionFactory;
 import com.github.mobile.persistence.DatabaseCache;
 import com.github.mobile.persistence.OrganizationRepositories;
 import com.github.mobile.persistence.Organizations;
@@ -26,17 +27,39 @@ import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
+import org.eclipse.egit.github.core.Repository;
 import org.eclipse.egit.github.core.User;
 
 /**
  * A cancelable sync operation to synchronize data for a given account
+ * <p>
+ * Repositories of each user and organization are requested concurrently up to
+ * a configurable limit while all database writes are funneled through a
+ * single writer thread. Connections opened by the campaign are tagged with it
+ * so cancelling disconnects requests in flight.
  */
 public class SyncCampaign implements Runnable {
 
     private static final String TAG = "SyncCampaign";
 
+    /**
+     * Default maximum number of organizations requested concurrently
+     */
+    public static final int DEFAULT_PARALLELISM = 4;
+
     /**
      * Factory to create campaign
      */
@@ -62,7 +85,21 @@ public class SyncCampaign implements Runnable {
 
     private final SyncResult syncResult;
 
-    private boolean cancelled = false;
+    private final OkHttpConnectionFactory connections = OkHttpConnectionFactory
+            .getDefault();
+
+    private final Map<String, Long> timings = Collections
+            .synchronizedMap(new LinkedHashMap<String, Long>());
+
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    private volatile boolean cancelled = false;
+
+    private ExecutorService fetchers;
+
+    private ExecutorService writer;
+
+    private List<Future<?>> fetches;
 
     /**
      * Create campaign for result
@@ -74,48 +111,178 @@ public class SyncCampaign implements Runnable {
         this.syncResult = syncResult;
     }
 
+    /**
+     * Set maximum number of organizations to request concurrently
+     *
+     * @param parallelism
+     * @return this campaign
+     */
+    public SyncCampaign setParallelism(final int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        return this;
+    }
+
+    /**
+     * Get time in milliseconds taken to request and store the repositories of
+     * each synchronized user and organization
+     *
+     * @return map of login to elapsed time
+     */
+    public Map<String, Long> getTimings() {
+        synchronized (timings) {
+            return new LinkedHashMap<String, Long>(timings);
+        }
+    }
+
     @Override
     public void run() {
+        OkHttpConnectionFactory.setRequestTag(this);
+        try {
+            syncAll();
+        } finally {
+            OkHttpConnectionFactory.setRequestTag(null);
+            connections.release(this);
+        }
+    }
+
+    private void syncAll() {
         List<User> orgs;
         try {
             orgs = cache.requestAndStore(persistedOrgs);
-            syncResult.stats.numUpdates++;
+            incrementUpdates();
         } catch (IOException e) {
-            syncResult.stats.numIoExceptions++;
+            incrementIoExceptions();
             Log.d(TAG, "Exception requesting users and orgs", e);
             return;
         } catch (SQLException e) {
-            syncResult.stats.numIoExceptions++;
+            incrementIoExceptions();
             Log.d(TAG, "Exception requesting users and orgs", e);
             return;
         }
 
         Log.d(TAG, "Syncing " + orgs.size() + " users and orgs");
-        for (User org : orgs) {
+        final List<Future<?>> pending;
+        synchronized (this) {
             if (cancelled)
                 return;
+            fetchers = Executors.newFixedThreadPool(Math.max(1,
+                    Math.min(parallelism, orgs.size())));
+            writer = Executors.newSingleThreadExecutor();
+            fetches = new ArrayList<Future<?>>(orgs.size());
+            for (final User org : orgs)
+                fetches.add(fetchers.submit(new Runnable() {
 
-            Log.d(TAG, "Syncing repos for " + org.getLogin());
-            try {
-                cache.requestAndStore(repos.under(org));
-                syncResult.stats.numUpdates++;
-            } catch (IOException e) {
-                syncResult.stats.numIoExceptions++;
-                Log.d(TAG, "Exception requesting repositories", e);
-            } catch (SQLException e) {
-                syncResult.stats.numIoExceptions++;
+                    @Override
+                    public void run() {
+                        OkHttpConnectionFactory
+                                .setRequestTag(SyncCampaign.this);
+                        try {
+                            sync(org);
+                        } finally {
+                            OkHttpConnectionFactory.setRequestTag(null);
+                        }
+                    }
+                }));
+            pending = new ArrayList<Future<?>>(fetches);
+        }
+
+        try {
+            for (Future<?> fetch : pending)
+                try {
+                    fetch.get();
+                } catch (ExecutionException e) {
+                    incrementIoExceptions();
+                    Log.d(TAG, "Exception syncing repositories", e.getCause());
+                }
+            writer.shutdown();
+            writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (CancellationException e) {
+            Log.d(TAG, "Sync campaign cancelled");
+            return;
+        } catch (InterruptedException e) {
+            Log.d(TAG, "Sync campaign interrupted", e);
+            return;
+        } finally {
+            fetchers.shutdownNow();
+            writer.shutdownNow();
+        }
+
+        if (!cancelled)
+            Log.d(TAG, "Sync campaign finished");
+    }
+
+    private void sync(final User org) {
+        if (cancelled)
+            return;
+
+        Log.d(TAG, "Syncing repos for " + org.getLogin());
+        final long start = System.currentTimeMillis();
+        final OrganizationRepositories resource = repos.under(org);
+        final List<Repository> items;
+        try {
+            items = resource.request();
+        } catch (IOException e) {
+            if (!cancelled) {
+                incrementIoExceptions();
                 Log.d(TAG, "Exception requesting repositories", e);
             }
+            return;
         }
 
-        Log.d(TAG, "Sync campaign finished");
+        if (cancelled)
+            return;
+
+        try {
+            writer.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        cache.store(resource, items);
+                        incrementUpdates();
+                    } catch (SQLException e) {
+                        incrementIoExceptions();
+                        Log.d(TAG, "Exception storing repositories", e);
+                    }
+                    long elapsed = System.currentTimeMillis() - start;
+                    timings.put(org.getLogin(), elapsed);
+                    Log.d(TAG, "Synced " + items.size() + " repos for "
+                            + org.getLogin() + " in " + elapsed + " ms");
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Campaign was cancelled while the request was in flight
+        }
+    }
+
+    private void incrementUpdates() {
+        synchronized (syncResult) {
+            syncResult.stats.numUpdates++;
+        }
+    }
+
+    private void incrementIoExceptions() {
+        synchronized (syncResult) {
+            syncResult.stats.numIoExceptions++;
+        }
     }
 
     /**
      * Cancel campaign
+     * <p>
+     * Pending requests are discarded, requests in flight are disconnected and
+     * nothing more is stored
      */
-    public void cancel() {
+    public synchronized void cancel() {
         cancelled = true;
+        connections.cancel(this);
+        if (fetches != null)
+            for (Future<?> fetch : fetches)
+                fetch.cancel(true);
+        if (fetchers != null)
+            fetchers.shutdownNow();
+        if (writer != null)
+            writer.shutdownNow();
         Log.d(TAG, "Cancelled");
     }
 }
@@ -18,7 +18,9 @@ package com.github.mobile.ui;
 import android.os.Bundle;
 
 import com.github.kevinsawicki.wishlist.ViewFinder;
+import com.github.mobile.core.ItemStore;
 import com.github.mobile.ui.roboactivities.RoboActionBarActivity;
+import com.github.mobile.util.AvatarLoader;
 
 import java.io.Serializable;
 
@@ -39,6 +41,27 @@ public class BaseActivity extends RoboActionBarActivity {
         finder = new ViewFinder(this);
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+
+        if (level >= TRIM_MEMORY_MODERATE) {
+            AvatarLoader.trimMemory(0);
+            ItemStore.trimMemory(0);
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            AvatarLoader.trimMemory(0.5F);
+            ItemStore.trimMemory(0.5F);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+
+        AvatarLoader.trimMemory(0);
+        ItemStore.trimMemory(0);
+    }
+
     /**
      * Get intent extra
      *
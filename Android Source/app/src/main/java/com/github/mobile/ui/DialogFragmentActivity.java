@@ -61,6 +61,16 @@ public abstract class DialogFragmentActivity extends
         return getIntent().getIntExtra(name, -1);
     }
 
+    /**
+     * Get intent extra
+     *
+     * @param name
+     * @return long
+     */
+    protected long getLongExtra(final String name) {
+        return getIntent().getLongExtra(name, -1);
+    }
+
     /**
      * Get intent extra
      *
@@ -22,6 +22,7 @@ import android.text.Html.ImageGetter;
 import android.util.Log;
 
 import com.github.mobile.accounts.AuthenticatedUserLoader;
+import com.github.mobile.persistence.MarkdownCache;
 import com.github.mobile.util.HtmlUtils;
 import com.google.inject.Inject;
 
@@ -32,6 +33,9 @@ import org.eclipse.egit.github.core.service.MarkdownService;
 
 /**
  * Markdown loader
+ * <p>
+ * Rendered markdown is cached by {@link MarkdownCache} so the same text is
+ * only rendered once by the API.
  */
 public class MarkdownLoader extends AuthenticatedUserLoader<CharSequence> {
 
@@ -48,6 +52,9 @@ public class MarkdownLoader extends AuthenticatedUserLoader<CharSequence> {
     @Inject
     private MarkdownService service;
 
+    @Inject
+    private MarkdownCache cache;
+
     /**
      * @param context
      * @param repository
@@ -72,20 +79,32 @@ public class MarkdownLoader extends AuthenticatedUserLoader<CharSequence> {
 
     @Override
     public CharSequence load(Account account) {
-        try {
-            String html;
-            if (repository != null)
-                html = service.getRepositoryHtml(repository, raw);
-            else
-                html = service.getHtml(raw, MODE_GFM);
-
-            if (encode)
-                return HtmlUtils.encode(html, imageGetter);
-            else
-                return html;
-        } catch (IOException e) {
-            Log.d(TAG, "Loading rendered markdown failed", e);
-            return null;
+        String key = MarkdownCache.getKey(repository, MODE_GFM, raw);
+        if (encode) {
+            CharSequence encoded = cache.getEncoded(key);
+            if (encoded != null)
+                return encoded;
         }
+
+        String html = cache.getHtml(key);
+        if (html == null)
+            try {
+                if (repository != null)
+                    html = service.getRepositoryHtml(repository, raw);
+                else
+                    html = service.getHtml(raw, MODE_GFM);
+                if (html != null)
+                    cache.putHtml(key, html);
+            } catch (IOException e) {
+                Log.d(TAG, "Loading rendered markdown failed", e);
+                return null;
+            }
+
+        if (!encode)
+            return html;
+
+        CharSequence encoded = HtmlUtils.encode(html, imageGetter);
+        cache.putEncoded(key, encoded);
+        return encoded;
     }
 }
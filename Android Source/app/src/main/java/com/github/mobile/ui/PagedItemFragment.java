@@ -62,7 +62,7 @@ public abstract class PagedItemFragment<E> extends ItemListFragment<E>
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        pager = createPager();
+        pager = createPager().setPrefetch(true);
     }
 
     /**
@@ -114,8 +114,11 @@ public abstract class PagedItemFragment<E> extends ItemListFragment<E>
             return;
         if (getLoaderManager().hasRunningLoaders())
             return;
+        // The next page is usually prefetched so start adding it a screen
+        // before the end of the list is reached
         if (listView != null
-                && listView.getLastVisiblePosition() >= pager.size())
+                && listView.getLastVisiblePosition() >= pager.size()
+                        - visibleItemCount)
             showMore();
     }
 
@@ -143,7 +146,7 @@ public abstract class PagedItemFragment<E> extends ItemListFragment<E>
     @Override
     protected void refreshWithProgress() {
         pager.reset();
-        pager = createPager();
+        pager = createPager().setPrefetch(true);
 
         super.refreshWithProgress();
     }
@@ -39,7 +39,9 @@ import com.github.mobile.R;
 import com.github.mobile.core.code.FullTree;
 import com.github.mobile.core.code.FullTree.Entry;
 import com.github.mobile.core.code.FullTree.Folder;
+import com.github.mobile.core.code.LoadFoldersTask;
 import com.github.mobile.core.code.RefreshTreeTask;
+import com.github.mobile.core.code.TreeCache;
 import com.github.mobile.core.ref.RefUtils;
 import com.github.mobile.ui.DialogFragment;
 import com.github.mobile.ui.DialogFragmentActivity;
@@ -53,7 +55,10 @@ import com.github.mobile.util.ToastUtils;
 import com.github.mobile.util.TypefaceUtils;
 import com.google.inject.Inject;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
+import java.util.List;
 
 import org.eclipse.egit.github.core.Reference;
 import org.eclipse.egit.github.core.Repository;
@@ -65,6 +70,12 @@ import org.eclipse.egit.github.core.service.DataService;
 public class RepositoryCodeFragment extends DialogFragment implements
         OnItemClickListener {
 
+    /**
+     * Maximum number of sub folders of the displayed folder loaded in the
+     * background
+     */
+    private static final int MAX_PREFETCH = 32;
+
     private FullTree tree;
 
     private ListView listView;
@@ -92,8 +103,13 @@ public class RepositoryCodeFragment extends DialogFragment implements
     @Inject
     private DataService service;
 
+    @Inject
+    private TreeCache cache;
+
     private RefDialog dialog;
 
+    private LoadFoldersTask prefetch;
+
     @Override
     public void onAttach(Activity activity) {
         super.onAttach(activity);
@@ -120,6 +136,7 @@ public class RepositoryCodeFragment extends DialogFragment implements
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
         case R.id.m_refresh:
+            cache.removeReferences(repository);
             if (tree != null)
                 refreshTree(new Reference().setRef(tree.reference.getRef()));
             else
@@ -138,7 +155,7 @@ public class RepositoryCodeFragment extends DialogFragment implements
 
     private void refreshTree(final Reference reference) {
         showLoading(true);
-        new RefreshTreeTask(repository, reference, getActivity()) {
+        new RefreshTreeTask(repository, reference, getActivity(), false) {
 
             @Override
             protected void onSuccess(final FullTree fullTree) throws Exception {
@@ -149,22 +166,12 @@ public class RepositoryCodeFragment extends DialogFragment implements
                 else {
                     // Look for current folder in new tree or else reset to root
                     Folder current = folder;
-                    LinkedList<Folder> stack = new LinkedList<Folder>();
+                    LinkedList<String> names = new LinkedList<String>();
                     while (current != null && current.parent != null) {
-                        stack.addFirst(current);
+                        names.addFirst(current.name);
                         current = current.parent;
                     }
-                    Folder refreshed = fullTree.root;
-                    while (!stack.isEmpty()) {
-                        refreshed = refreshed.folders
-                                .get(stack.removeFirst().name);
-                        if (refreshed == null)
-                            break;
-                    }
-                    if (refreshed != null)
-                        setFolder(fullTree, refreshed);
-                    else
-                        setFolder(fullTree, fullTree.root);
+                    openFolder(fullTree, fullTree.root, names);
                 }
             }
 
@@ -255,7 +262,108 @@ public class RepositoryCodeFragment extends DialogFragment implements
             return false;
     }
 
+    /**
+     * Open the folder at the given names below a folder, loading each folder
+     * along the way that is not loaded yet
+     *
+     * @param tree
+     * @param folder
+     * @param names
+     */
+    private void openFolder(final FullTree tree, final Folder folder,
+            final LinkedList<String> names) {
+        Folder current = folder;
+        while (!names.isEmpty() && current.isLoaded()) {
+            Folder child = current.getFolder(names.getFirst());
+            if (child == null) {
+                names.clear();
+                break;
+            }
+            names.removeFirst();
+            current = child;
+        }
+
+        if (names.isEmpty() || current.isLoaded()) {
+            setFolder(tree, current);
+            return;
+        }
+
+        final Folder unloaded = current;
+        new LoadFoldersTask(getActivity(), repository, tree,
+                Collections.singleton(unloaded)) {
+
+            @Override
+            protected void onLoaded(FullTree tree) {
+                openFolder(tree, unloaded, names);
+            }
+
+            @Override
+            protected void onException(Exception e) throws RuntimeException {
+                super.onException(e);
+
+                setFolder(tree, tree.root);
+            }
+        }.execute();
+    }
+
+    /**
+     * Load the sub folders of the displayed folder in the background so they
+     * open without waiting and their counts can be shown
+     *
+     * @param tree
+     * @param folder
+     */
+    private void prefetch(final FullTree tree, final Folder folder) {
+        if (prefetch != null)
+            prefetch.cancel(true);
+
+        List<Folder> unloaded = new ArrayList<Folder>();
+        for (Folder child : folder.getFolders())
+            if (!child.isLoaded()) {
+                unloaded.add(child);
+                if (unloaded.size() == MAX_PREFETCH)
+                    break;
+            }
+        if (unloaded.isEmpty()) {
+            prefetch = null;
+            return;
+        }
+
+        prefetch = new LoadFoldersTask(getActivity(), repository, tree,
+                unloaded) {
+
+            @Override
+            protected void onLoaded(FullTree loaded) {
+                if (folder == RepositoryCodeFragment.this.folder)
+                    adapter.getWrappedAdapter().notifyDataSetChanged();
+            }
+        };
+        prefetch.execute();
+    }
+
     private void setFolder(final FullTree tree, final Folder folder) {
+        if (!folder.isLoaded()) {
+            showLoading(true);
+            new LoadFoldersTask(getActivity(), repository, tree,
+                    Collections.singleton(folder)) {
+
+                @Override
+                protected void onLoaded(FullTree tree) {
+                    setFolder(tree, folder);
+                }
+
+                @Override
+                protected void onException(Exception e)
+                        throws RuntimeException {
+                    super.onException(e);
+
+                    showLoading(false);
+                    ToastUtils.show(getActivity(), e, R.string.error_code_load);
+                }
+            }.execute();
+            return;
+        }
+
         this.folder = folder;
         this.tree = tree;
 
@@ -302,6 +410,7 @@ public class RepositoryCodeFragment extends DialogFragment implements
 
         adapter.getWrappedAdapter().setItems(folder);
         listView.setSelection(0);
+        prefetch(tree, folder);
     }
 
     @Override
@@ -15,7 +15,9 @@
  */
 package com.github.mobile.ui.comment;
 
+import static org.eclipse.egit.github.core.service.MarkdownService.MODE_GFM;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v4.app.LoaderManager.LoaderCallbacks;
 import android.support.v4.content.Loader;
 import android.view.LayoutInflater;
@@ -27,6 +29,7 @@ import android.widget.TextView;
 import com.github.kevinsawicki.wishlist.Keyboard;
 import com.github.kevinsawicki.wishlist.ViewUtils;
 import com.github.mobile.R;
+import com.github.mobile.persistence.MarkdownCache;
 import com.github.mobile.ui.DialogFragment;
 import com.github.mobile.ui.MarkdownLoader;
 import com.github.mobile.util.HttpImageGetter;
@@ -47,6 +50,11 @@ public class RenderedCommentFragment extends DialogFragment implements
 
     private static final String ARG_REPO = "repo";
 
+    /**
+     * Milliseconds to wait for further text changes before rendering
+     */
+    private static final long RENDER_DELAY = 250;
+
     private ProgressBar progress;
 
     private TextView bodyText;
@@ -54,6 +62,26 @@ public class RenderedCommentFragment extends DialogFragment implements
     @Inject
     private HttpImageGetter imageGetter;
 
+    @Inject
+    private MarkdownCache cache;
+
+    private final Handler handler = new Handler();
+
+    private final Runnable render = new Runnable() {
+
+        @Override
+        public void run() {
+            getLoaderManager().restartLoader(0, renderArgs,
+                    RenderedCommentFragment.this);
+        }
+    };
+
+    private Bundle renderArgs;
+
+    private String renderKey;
+
+    private String renderedKey;
+
     @Override
     public void onViewCreated(View view, Bundle savedInstanceState) {
         super.onViewCreated(view, savedInstanceState);
@@ -64,18 +92,51 @@ public class RenderedCommentFragment extends DialogFragment implements
 
     /**
      * Set text to render
+     * <p>
+     * Rendering is delayed briefly so repeated calls only render the last
+     * text, text already shown or rendered before is not rendered again.
      *
      * @param raw
      * @param repo
      */
     public void setText(final String raw, final IRepositoryIdProvider repo) {
-        Bundle args = new Bundle();
-        args.putCharSequence(ARG_TEXT, raw);
-        if (repo instanceof Serializable)
-            args.putSerializable(ARG_REPO, (Serializable) repo);
-        getLoaderManager().restartLoader(0, args, this);
         Keyboard.hideSoftInput(bodyText);
+
+        String text = raw != null ? raw : "";
+        String key = MarkdownCache.getKey(repo, MODE_GFM, text);
+        if (key.equals(renderKey))
+            return;
+
+        handler.removeCallbacks(render);
+        renderKey = key;
+        if (key.equals(renderedKey)) {
+            getLoaderManager().destroyLoader(0);
+            showLoading(false);
+            return;
+        }
+
+        CharSequence rendered = cache.getEncoded(key);
+        if (rendered != null) {
+            getLoaderManager().destroyLoader(0);
+            showRendered(key, rendered);
+            return;
+        }
+
+        renderArgs = new Bundle();
+        renderArgs.putCharSequence(ARG_TEXT, text);
+        if (repo instanceof Serializable)
+            renderArgs.putSerializable(ARG_REPO, (Serializable) repo);
         showLoading(true);
+        handler.postDelayed(render, RENDER_DELAY);
+    }
+
+    private void showRendered(final String key, final CharSequence rendered) {
+        if (rendered == null)
+            ToastUtils.show(getActivity(), R.string.error_rendering_markdown);
+        else
+            renderedKey = key;
+        bodyText.setText(rendered);
+        showLoading(false);
     }
 
     private void showLoading(final boolean loading) {
@@ -83,6 +144,15 @@ public class RenderedCommentFragment extends DialogFragment implements
         ViewUtils.setGone(bodyText, loading);
     }
 
+    @Override
+    public void onDestroyView() {
+        handler.removeCallbacks(render);
+        renderKey = null;
+        renderedKey = null;
+
+        super.onDestroyView();
+    }
+
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container,
             Bundle savedInstanceState) {
@@ -101,10 +171,9 @@ public class RenderedCommentFragment extends DialogFragment implements
     @Override
     public void onLoadFinished(Loader<CharSequence> loader,
             CharSequence rendered) {
+        showRendered(renderKey, rendered);
         if (rendered == null)
-            ToastUtils.show(getActivity(), R.string.error_rendering_markdown);
-        bodyText.setText(rendered);
-        showLoading(false);
+            renderKey = null;
     }
 
     @Override
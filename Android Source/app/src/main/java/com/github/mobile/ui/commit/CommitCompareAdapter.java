@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile.ui.commit;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.TextView;
+
+import com.github.mobile.R;
+import com.github.mobile.core.commit.CommitUtils;
+import com.github.mobile.ui.StyledText;
+import com.github.mobile.util.AvatarLoader;
+import com.github.mobile.util.TypefaceUtils;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.egit.github.core.CommitFile;
+import org.eclipse.egit.github.core.RepositoryCommit;
+
+/**
+ * Adapter to display the commits and files of a comparison
+ * <p>
+ * Commits are rows of this adapter instead of list headers so only the
+ * visible commits are inflated.
+ */
+public class CommitCompareAdapter extends CommitFileListAdapter {
+
+    /**
+     * Summary of the changed files
+     */
+    private static class FileSummary {
+
+        private final List<CommitFile> files;
+
+        private FileSummary(final List<CommitFile> files) {
+            this.files = files;
+        }
+    }
+
+    /**
+     * Divider between commits
+     */
+    private static class Divider {
+    }
+
+    private static final Divider DIVIDER = new Divider();
+
+    // Types after those of CommitFileListAdapter
+    private static final int TYPE_COMMIT = 4;
+
+    private static final int TYPE_DIVIDER = 5;
+
+    private static final int TYPE_FILE_SUMMARY = 6;
+
+    private final AvatarLoader avatars;
+
+    /**
+     * @param inflater
+     * @param diffStyler
+     * @param avatars
+     */
+    public CommitCompareAdapter(final LayoutInflater inflater,
+            final DiffStyler diffStyler, final AvatarLoader avatars) {
+        super(inflater, diffStyler, avatars, null);
+
+        this.avatars = avatars;
+    }
+
+    /**
+     * Add commits to adapter
+     *
+     * @param commits
+     */
+    public void addCommits(final Collection<RepositoryCommit> commits) {
+        for (RepositoryCommit commit : commits)
+            enqueue(commit);
+    }
+
+    /**
+     * Add summary of the given files to adapter
+     *
+     * @param files
+     */
+    public void addFileSummary(final List<CommitFile> files) {
+        enqueue(new FileSummary(files));
+    }
+
+    @Override
+    protected int addRows(final Object item) {
+        if (item instanceof RepositoryCommit) {
+            addItem(TYPE_COMMIT, item);
+            addItem(TYPE_DIVIDER, DIVIDER);
+            return 2;
+        }
+        if (item instanceof FileSummary) {
+            addItem(TYPE_FILE_SUMMARY, item);
+            return 1;
+        }
+        return super.addRows(item);
+    }
+
+    @Override
+    public int getViewTypeCount() {
+        return 7;
+    }
+
+    @Override
+    public boolean isEnabled(final int position) {
+        switch (getItemViewType(position)) {
+        case TYPE_DIVIDER:
+        case TYPE_FILE_SUMMARY:
+            return false;
+        default:
+            return super.isEnabled(position);
+        }
+    }
+
+    @Override
+    protected int getChildLayoutId(final int type) {
+        switch (type) {
+        case TYPE_COMMIT:
+            return R.layout.commit_item;
+        case TYPE_DIVIDER:
+            return R.layout.list_divider;
+        case TYPE_FILE_SUMMARY:
+            return R.layout.commit_compare_file_details_header;
+        default:
+            return super.getChildLayoutId(type);
+        }
+    }
+
+    @Override
+    protected int[] getChildViewIds(final int type) {
+        switch (type) {
+        case TYPE_COMMIT:
+            return new int[] { R.id.tv_commit_id, R.id.tv_commit_author,
+                    R.id.iv_avatar, R.id.tv_commit_message,
+                    R.id.tv_commit_comments };
+        case TYPE_DIVIDER:
+            return new int[0];
+        case TYPE_FILE_SUMMARY:
+            return new int[] { R.id.tv_commit_file_summary };
+        default:
+            return super.getChildViewIds(type);
+        }
+    }
+
+    @Override
+    protected View initialize(final int type, final View view) {
+        View initialized = super.initialize(type, view);
+        if (type == TYPE_COMMIT)
+            TypefaceUtils.setOcticons((TextView) initialized
+                    .findViewById(R.id.tv_comment_icon));
+        return initialized;
+    }
+
+    @Override
+    protected void update(final int position, final Object item, final int type) {
+        switch (type) {
+        case TYPE_COMMIT:
+            RepositoryCommit commit = (RepositoryCommit) item;
+            setText(0, CommitUtils.abbreviate(commit.getSha()));
+
+            StyledText authorText = new StyledText();
+            authorText.bold(CommitUtils.getAuthor(commit));
+            authorText.append(' ');
+            authorText.append(CommitUtils.getAuthorDate(commit));
+            setText(1, authorText);
+
+            CommitUtils.bindAuthor(commit, avatars, imageView(2));
+            setText(3, commit.getCommit().getMessage());
+            setText(4, CommitUtils.getCommentCount(commit));
+            return;
+        case TYPE_DIVIDER:
+            return;
+        case TYPE_FILE_SUMMARY:
+            setText(0, CommitUtils.formatStats(((FileSummary) item).files));
+            return;
+        default:
+            super.update(position, item, type);
+        }
+    }
+}
@@ -22,6 +22,7 @@ import android.accounts.Account;
 import android.app.Activity;
 import android.os.Bundle;
 import android.text.TextUtils;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.Menu;
 import android.view.MenuInflater;
@@ -37,7 +38,6 @@ import android.widget.TextView;
 import com.github.kevinsawicki.wishlist.ViewUtils;
 import com.github.mobile.R;
 import com.github.mobile.core.commit.CommitCompareTask;
-import com.github.mobile.core.commit.CommitUtils;
 import com.github.mobile.ui.DialogFragment;
 import com.github.mobile.ui.HeaderFooterListAdapter;
 import com.github.mobile.util.AvatarLoader;
@@ -45,6 +45,7 @@ import com.github.mobile.util.ToastUtils;
 import com.google.inject.Inject;
 
 import java.text.MessageFormat;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -54,12 +55,21 @@ import org.eclipse.egit.github.core.Repository;
 import org.eclipse.egit.github.core.RepositoryCommit;
 import org.eclipse.egit.github.core.RepositoryCommitCompare;
 
+import roboguice.util.RoboAsyncTask;
+
 /**
  * Fragment to display a list of commits being compared
  */
 public class CommitCompareListFragment extends DialogFragment implements
         OnItemClickListener {
 
+    private static final String TAG = "CommitCompareListFragment";
+
+    /**
+     * Maximum number of changed lines in a file that is initially expanded
+     */
+    private static final int MAX_EXPANDED_CHANGES = 500;
+
     private DiffStyler diffStyler;
 
     private ListView list;
@@ -75,7 +85,7 @@ public class CommitCompareListFragment extends DialogFragment implements
     @Inject
     private AvatarLoader avatars;
 
-    private HeaderFooterListAdapter<CommitFileListAdapter> adapter;
+    private HeaderFooterListAdapter<CommitCompareAdapter> adapter;
 
     private RepositoryCommitCompare compare;
 
@@ -160,7 +170,9 @@ public class CommitCompareListFragment extends DialogFragment implements
 
         LayoutInflater inflater = getActivity().getLayoutInflater();
         adapter.clearHeaders();
-        adapter.getWrappedAdapter().clear();
+
+        CommitCompareAdapter rootAdapter = adapter.getWrappedAdapter();
+        rootAdapter.clear();
 
         List<RepositoryCommit> commits = compare.getCommits();
         if (commits != null && !commits.isEmpty()) {
@@ -171,33 +183,80 @@ public class CommitCompareListFragment extends DialogFragment implements
                             getString(R.string.comparing_commits), commits.size()));
             adapter.addHeader(commitHeader);
             adapter.addHeader(inflater.inflate(R.layout.list_divider, null));
-            CommitListAdapter commitAdapter = new CommitListAdapter(
-                    R.layout.commit_item, inflater, commits, avatars);
-            for (int i = 0; i < commits.size(); i++) {
-                RepositoryCommit commit = commits.get(i);
-                View view = commitAdapter.getView(i, null, null);
-                adapter.addHeader(view, commit, true);
-                adapter.addHeader(inflater.inflate(R.layout.list_divider, null));
-            }
+            rootAdapter.addCommits(commits);
         }
 
-        CommitFileListAdapter rootAdapter = adapter.getWrappedAdapter();
-        rootAdapter.clear();
         List<CommitFile> files = compare.getFiles();
         if (files != null && !files.isEmpty()) {
-            addFileStatHeader(files, inflater);
-            for (CommitFile file : files)
+            rootAdapter.addFileSummary(files);
+            List<CommitFile> expanded = new ArrayList<CommitFile>();
+            for (CommitFile file : files) {
+                rootAdapter.setCollapsed(file, true);
                 rootAdapter.addItem(file);
+                if (file.getChanges() <= MAX_EXPANDED_CHANGES)
+                    expanded.add(file);
+            }
+            expand(expanded, -1);
         }
     }
 
-    private void addFileStatHeader(List<CommitFile> files,
-            LayoutInflater inflater) {
-        View fileHeader = inflater.inflate(
-                R.layout.commit_compare_file_details_header, null);
-        ((TextView) fileHeader.findViewById(R.id.tv_commit_file_summary))
-                .setText(CommitUtils.formatStats(files));
-        adapter.addHeader(fileHeader);
+    /**
+     * Expand files once their patches have been split into lines
+     *
+     * @param files
+     * @param position
+     *            adapter position to show, -1 to keep the current scroll
+     *            position
+     */
+    private void expand(final List<CommitFile> files, final int position) {
+        if (files.isEmpty())
+            return;
+
+        final RepositoryCommitCompare expanding = compare;
+        new RoboAsyncTask<Void>(getActivity()) {
+
+            @Override
+            public Void call() throws Exception {
+                for (CommitFile file : files)
+                    diffStyler.get(file.getFilename());
+                return null;
+            }
+
+            @Override
+            protected void onSuccess(Void result) throws Exception {
+                if (!isUsable() || expanding != compare)
+                    return;
+
+                CommitCompareAdapter rootAdapter = adapter.getWrappedAdapter();
+                for (CommitFile file : files)
+                    rootAdapter.setCollapsed(file, false);
+
+                int first = list.getFirstVisiblePosition();
+                View child = list.getChildAt(0);
+                int top = child != null ? child.getTop() : 0;
+                int headers = adapter.getHeadersCount();
+                rootAdapter.refresh(Math.max(position, first - headers
+                        + list.getChildCount()));
+                if (position == -1)
+                    list.setSelectionFromTop(first, top);
+            }
+
+            @Override
+            protected void onException(Exception e) throws RuntimeException {
+                Log.d(TAG, "Exception splitting patches", e);
+            }
+        }.execute();
+    }
+
+    private void toggleFile(final CommitFile file, final int position) {
+        CommitCompareAdapter rootAdapter = adapter.getWrappedAdapter();
+        if (rootAdapter.isCollapsed(file))
+            expand(Collections.singletonList(file), position
+                    - adapter.getHeadersCount());
+        else {
+            rootAdapter.setCollapsed(file, true);
+            rootAdapter.refresh(position - adapter.getHeadersCount());
+        }
     }
 
     @Override
@@ -211,8 +270,8 @@ public class CommitCompareListFragment extends DialogFragment implements
 
         list.setOnItemClickListener(this);
 
-        adapter = new HeaderFooterListAdapter<CommitFileListAdapter>(list,
-                new CommitFileListAdapter(inflater, diffStyler, null, null));
+        adapter = new HeaderFooterListAdapter<CommitCompareAdapter>(list,
+                new CommitCompareAdapter(inflater, diffStyler, avatars));
         adapter.addFooter(inflater.inflate(R.layout.footer_separator, null));
         list.setAdapter(adapter);
     }
@@ -265,7 +324,7 @@ public class CommitCompareListFragment extends DialogFragment implements
         if (item instanceof RepositoryCommit)
             openCommit((RepositoryCommit) item);
         else if (item instanceof CommitFile)
-            openFile((CommitFile) item);
+            toggleFile((CommitFile) item, position);
         else if (item instanceof CharSequence)
             openLine(parent, position);
     }
@@ -254,6 +254,15 @@ public class CommitDiffListFragment extends DialogFragment implements
                 return full;
             }
 
+            @Override
+            protected void onStoredCommitLoaded(RepositoryCommit stored) {
+                if (!isUsable() || commit != null)
+                    return;
+
+                commit = stored;
+                updateHeader(stored);
+            }
+
             @Override
             protected void onSuccess(FullCommit commit) throws Exception {
                 super.onSuccess(commit);
@@ -17,8 +17,11 @@ package com.github.mobile.ui.commit;
 
 import static com.github.kevinsawicki.wishlist.ViewUpdater.FORMAT_INT;
 import android.content.res.Resources;
+import android.os.Handler;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
 
 import com.github.kevinsawicki.wishlist.MultiTypeAdapter;
 import com.github.kevinsawicki.wishlist.ViewUtils;
@@ -29,16 +32,28 @@ import com.github.mobile.util.AvatarLoader;
 import com.github.mobile.util.HttpImageGetter;
 import com.github.mobile.util.TimeUtils;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.egit.github.core.CommitComment;
 import org.eclipse.egit.github.core.CommitFile;
 
 /**
  * Adapter to display a list of files changed in commits
+ * <p>
+ * Added files and comments are queued and their rows are only added a page at
+ * a time as the list is scrolled towards the last added row.
  */
 public class CommitFileListAdapter extends MultiTypeAdapter {
 
+    /**
+     * Number of rows added each time more rows are needed
+     */
+    private static final int PAGE_SIZE = 200;
+
     private static final int TYPE_FILE_HEADER = 0;
 
     private static final int TYPE_FILE_LINE = 1;
@@ -57,6 +72,38 @@ public class CommitFileListAdapter extends MultiTypeAdapter {
 
     private final int removeTextColor;
 
+    /**
+     * Everything added since the last clear, in order
+     */
+    private final List<Object> added = new ArrayList<Object>();
+
+    private final LinkedList<Object> pending = new LinkedList<Object>();
+
+    private final Set<CommitFile> collapsed = new HashSet<CommitFile>();
+
+    /**
+     * Next line to add from the first pending file
+     */
+    private int pendingLine;
+
+    /**
+     * Has the header of the first pending file been added?
+     */
+    private boolean pendingStarted;
+
+    private final Handler handler = new Handler();
+
+    private boolean pageQueued;
+
+    private final Runnable addPage = new Runnable() {
+
+        @Override
+        public void run() {
+            pageQueued = false;
+            addPage();
+        }
+    };
+
     /**
      * @param inflater
      * @param diffStyler
@@ -106,15 +153,7 @@ public class CommitFileListAdapter extends MultiTypeAdapter {
      * @param file
      */
     public void addItem(final FullCommitFile file) {
-        addItem(TYPE_FILE_HEADER, file.getFile());
-        List<CharSequence> lines = diffStyler.get(file.getFile().getFilename());
-        int number = 0;
-        for (CharSequence line : lines) {
-            addItem(TYPE_FILE_LINE, line);
-            for (CommitComment comment : file.get(number))
-                addItem(TYPE_LINE_COMMENT, comment);
-            number++;
-        }
+        enqueue(file);
     }
 
     /**
@@ -123,8 +162,7 @@ public class CommitFileListAdapter extends MultiTypeAdapter {
      * @param file
      */
     public void addItem(final CommitFile file) {
-        addItem(TYPE_FILE_HEADER, file);
-        addItems(TYPE_FILE_LINE, diffStyler.get(file.getFilename()));
+        enqueue(file);
     }
 
     /**
@@ -133,7 +171,164 @@ public class CommitFileListAdapter extends MultiTypeAdapter {
      * @param comment
      */
     public void addComment(final CommitComment comment) {
-        addItem(TYPE_COMMENT, comment);
+        enqueue(comment);
+    }
+
+    /**
+     * Set whether only the header of the given file is displayed
+     * <p>
+     * Call {@link #refresh(int)} to update the displayed rows
+     *
+     * @param file
+     * @param collapsed
+     */
+    public void setCollapsed(final CommitFile file, final boolean collapsed) {
+        if (collapsed)
+            this.collapsed.add(file);
+        else
+            this.collapsed.remove(file);
+    }
+
+    /**
+     * Is only the header of the given file displayed?
+     *
+     * @param file
+     * @return true if collapsed, false otherwise
+     */
+    public boolean isCollapsed(final CommitFile file) {
+        return collapsed.contains(file);
+    }
+
+    /**
+     * Add the rows again, with at least the rows up to the given position
+     *
+     * @param position
+     */
+    public void refresh(final int position) {
+        reset();
+        super.clear();
+        pending.addAll(added);
+        while (!pending.isEmpty() && getCount() <= position + PAGE_SIZE / 2)
+            addPage();
+    }
+
+    @Override
+    public MultiTypeAdapter clear() {
+        reset();
+        added.clear();
+        collapsed.clear();
+        return super.clear();
+    }
+
+    private void reset() {
+        pending.clear();
+        pendingLine = 0;
+        pendingStarted = false;
+        handler.removeCallbacks(addPage);
+        pageQueued = false;
+    }
+
+    @Override
+    public View getView(final int position, final View convertView,
+            final ViewGroup parent) {
+        if (!pending.isEmpty() && !pageQueued
+                && position >= getCount() - PAGE_SIZE / 2) {
+            // Rows can't be added while the list is laying out its children
+            pageQueued = true;
+            handler.post(addPage);
+        }
+        return super.getView(position, convertView, parent);
+    }
+
+    /**
+     * Add item whose rows are added once the list is scrolled to them
+     *
+     * @param item
+     */
+    protected void enqueue(final Object item) {
+        added.add(item);
+        pending.add(item);
+        if (getCount() < PAGE_SIZE)
+            addPage();
+    }
+
+    /**
+     * Add the rows of a queued item that is not a file
+     *
+     * @param item
+     * @return number of rows added
+     */
+    protected int addRows(final Object item) {
+        if (item instanceof CommitComment) {
+            addItem(TYPE_COMMENT, item);
+            return 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Add the rows of the next pending items
+     */
+    private void addPage() {
+        int rows = 0;
+        while (rows < PAGE_SIZE && !pending.isEmpty()) {
+            Object item = pending.getFirst();
+            if (!(item instanceof FullCommitFile)
+                    && !(item instanceof CommitFile)) {
+                rows += addRows(item);
+                pending.removeFirst();
+                continue;
+            }
+
+            FullCommitFile fullFile = null;
+            CommitFile file;
+            if (item instanceof FullCommitFile) {
+                fullFile = (FullCommitFile) item;
+                file = fullFile.getFile();
+            } else
+                file = (CommitFile) item;
+
+            if (!pendingStarted) {
+                addItem(TYPE_FILE_HEADER, file);
+                pendingStarted = true;
+                rows++;
+            }
+
+            if (collapsed.contains(file)) {
+                pending.removeFirst();
+                pendingStarted = false;
+                continue;
+            }
+
+            List<CharSequence> lines = diffStyler.get(file.getFilename());
+            int end = Math.min(lines.size(), pendingLine + PAGE_SIZE - rows);
+            if (fullFile == null) {
+                addItems(TYPE_FILE_LINE, lines.subList(pendingLine, end));
+                rows += end - pendingLine;
+                pendingLine = end;
+            } else {
+                // Add runs of lines between line comments together
+                int run = pendingLine;
+                for (int line = pendingLine; line < end; line++) {
+                    List<CommitComment> comments = fullFile.get(line);
+                    if (comments.isEmpty())
+                        continue;
+                    addItems(TYPE_FILE_LINE, lines.subList(run, line + 1));
+                    addItems(TYPE_LINE_COMMENT, comments);
+                    rows += comments.size();
+                    run = line + 1;
+                }
+                addItems(TYPE_FILE_LINE, lines.subList(run, end));
+                rows += end - pendingLine;
+                pendingLine = end;
+            }
+
+            if (pendingLine >= lines.size()) {
+                pending.removeFirst();
+                pendingLine = 0;
+                pendingStarted = false;
+            }
+        }
     }
 
     @Override
@@ -21,7 +21,6 @@ import android.util.Log;
 
 import com.github.mobile.R;
 import com.github.mobile.ui.ProgressDialogTask;
-import com.github.mobile.util.HtmlUtils;
 import com.github.mobile.util.ToastUtils;
 import com.google.inject.Inject;
 
@@ -76,11 +75,7 @@ public class CreateCommentTask extends ProgressDialogTask<CommitComment> {
 
     @Override
     public CommitComment run(final Account account) throws Exception {
-        CommitComment created = service.addComment(repository, commit, comment);
-        String formatted = HtmlUtils.format(created.getBodyHtml()).toString();
-        created.setBodyHtml(formatted);
-        return created;
-
+        return service.addComment(repository, commit, comment);
     }
 
     @Override
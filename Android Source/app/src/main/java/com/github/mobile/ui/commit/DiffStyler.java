@@ -21,7 +21,6 @@ import android.widget.TextView;
 
 import com.github.mobile.R;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -35,6 +34,8 @@ import org.eclipse.egit.github.core.CommitFile;
  */
 public class DiffStyler {
 
+    private final Map<String, String> patches = new HashMap<String, String>();
+
     private final Map<String, List<CharSequence>> diffs = new HashMap<String, List<CharSequence>>();
 
     private final int markerColor;
@@ -51,14 +52,6 @@ public class DiffStyler {
         defaultColor = resources.getColor(R.color.text);
     }
 
-    private int nextLine(final String patch, final int start, final int length) {
-        final int end = patch.indexOf('\n', start);
-        if (end != -1)
-            return end;
-        else
-            return length;
-    }
-
     /**
      * Style view for line
      *
@@ -93,30 +86,23 @@ public class DiffStyler {
 
     /**
      * Set files to styler
+     * <p>
+     * The patches are only split into lines when first requested through
+     * {@link #get(String)}, which may happen on a background thread
      *
      * @param files
      * @return this styler
      */
-    public DiffStyler setFiles(final Collection<CommitFile> files) {
+    public synchronized DiffStyler setFiles(final Collection<CommitFile> files) {
+        patches.clear();
         diffs.clear();
         if (files == null || files.isEmpty())
             return this;
 
         for (CommitFile file : files) {
             String patch = file.getPatch();
-            if (TextUtils.isEmpty(patch))
-                continue;
-
-            int start = 0;
-            int length = patch.length();
-            int end = nextLine(patch, start, length);
-            List<CharSequence> lines = new ArrayList<CharSequence>();
-            while (start < length) {
-                lines.add(patch.substring(start, end));
-                start = end + 1;
-                end = nextLine(patch, start, length);
-            }
-            diffs.put(file.getFilename(), lines);
+            if (!TextUtils.isEmpty(patch))
+                patches.put(file.getFilename(), patch);
         }
         return this;
     }
@@ -125,12 +111,20 @@ public class DiffStyler {
      * Get lines for file path
      *
      * @param file
-     * @return styled text
+     * @return lines, each a view of the file's patch
      */
-    public List<CharSequence> get(final String file) {
+    public synchronized List<CharSequence> get(final String file) {
         if (TextUtils.isEmpty(file))
             return Collections.emptyList();
+
         List<CharSequence> lines = diffs.get(file);
-        return lines != null ? lines : Collections.<CharSequence>emptyList();
+        if (lines == null) {
+            String patch = patches.get(file);
+            if (patch == null)
+                return Collections.emptyList();
+            lines = new PatchLines(patch);
+            diffs.put(file, lines);
+        }
+        return lines;
     }
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile.ui.commit;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Lines of a patch backed by the patch itself
+ * <p>
+ * Only the offsets of the lines are stored and each line is a view of the
+ * patch that does not copy its characters.
+ */
+public class PatchLines extends AbstractList<CharSequence> implements
+        RandomAccess {
+
+    /**
+     * Line of a patch
+     */
+    private static class Line implements CharSequence {
+
+        private final String patch;
+
+        private final int start;
+
+        private final int end;
+
+        private Line(final String patch, final int start, final int end) {
+            this.patch = patch;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (index < 0 || index >= end - start)
+                throw new IndexOutOfBoundsException();
+            return patch.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(final int from, final int to) {
+            if (from < 0 || to > end - start || from > to)
+                throw new IndexOutOfBoundsException();
+            return new Line(patch, start + from, start + to);
+        }
+
+        @Override
+        public String toString() {
+            return patch.substring(start, end);
+        }
+    }
+
+    private final String patch;
+
+    /**
+     * Start offset of each line followed by the start offset of the line
+     * after the last line
+     */
+    private final int[] starts;
+
+    private final int size;
+
+    /**
+     * Create lines of patch
+     *
+     * @param patch
+     */
+    public PatchLines(final String patch) {
+        this.patch = patch;
+
+        final int length = patch.length();
+        int[] starts = new int[16];
+        int size = 0;
+        int start = 0;
+        while (start < length) {
+            if (size + 1 >= starts.length) {
+                int[] grown = new int[starts.length * 2];
+                System.arraycopy(starts, 0, grown, 0, size);
+                starts = grown;
+            }
+            starts[size++] = start;
+            int end = patch.indexOf('\n', start);
+            start = end != -1 ? end + 1 : length + 1;
+        }
+        starts[size] = start;
+
+        this.starts = starts;
+        this.size = size;
+    }
+
+    @Override
+    public CharSequence get(final int location) {
+        if (location < 0 || location >= size)
+            throw new IndexOutOfBoundsException();
+
+        int end = Math.min(starts[location + 1] - 1, patch.length());
+        return new Line(patch, starts[location], end);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -21,7 +21,6 @@ import android.util.Log;
 
 import com.github.mobile.R;
 import com.github.mobile.ui.ProgressDialogTask;
-import com.github.mobile.util.HtmlUtils;
 import com.github.mobile.util.ToastUtils;
 import com.google.inject.Inject;
 
@@ -70,11 +69,7 @@ public class CreateCommentTask extends ProgressDialogTask<Comment> {
 
     @Override
     public Comment run(Account account) throws Exception {
-        Comment created = service.createComment(id, comment);
-        String formatted = HtmlUtils.format(created.getBodyHtml()).toString();
-        created.setBodyHtml(formatted);
-        return created;
-
+        return service.createComment(id, comment);
     }
 
     @Override
@@ -23,7 +23,6 @@ import android.util.Log;
 
 import com.github.mobile.R;
 import com.github.mobile.ui.ProgressDialogTask;
-import com.github.mobile.util.HtmlUtils;
 import com.github.mobile.util.ToastUtils;
 import com.google.inject.Inject;
 
@@ -71,11 +70,7 @@ public class EditCommentTask extends ProgressDialogTask<Comment> {
 
     @Override
     public Comment run(Account account) throws Exception {
-        Comment edited = editComment(gistId, comment);
-        String formatted = HtmlUtils.format(edited.getBodyHtml()).toString();
-        edited.setBodyHtml(formatted);
-        return edited;
-
+        return editComment(gistId, comment);
     }
 
     @Override
@@ -140,6 +140,18 @@ public class GistFileFragment extends DialogFragment implements
 
             @Override
             public GistFile run(Account account) throws Exception {
+                // Use the content of the stored gist when another file's
+                // fragment already loaded it
+                Gist stored = store.getGist(gistId);
+                if (stored != null && stored.getFiles() != null) {
+                    GistFile storedFile = stored.getFiles().get(
+                            file.getFilename());
+                    if (storedFile != null && storedFile.getContent() != null) {
+                        gist = stored;
+                        return storedFile;
+                    }
+                }
+
                 gist = store.refreshGist(gistId);
                 Map<String, GistFile> files = gist.getFiles();
                 if (files == null)
@@ -183,7 +183,7 @@ public class GistFragment extends DialogFragment implements OnItemClickListener
         if (gist != null && comments != null)
             updateList(gist, comments);
         else
-            refreshGist();
+            refreshGist(false);
     }
 
     private boolean isOwner() {
@@ -264,7 +264,7 @@ public class GistFragment extends DialogFragment implements OnItemClickListener
                 starGist();
             return true;
         case R.id.m_refresh:
-            refreshGist();
+            refreshGist(true);
             return true;
         case R.id.m_share:
             shareGist();
@@ -342,7 +342,7 @@ public class GistFragment extends DialogFragment implements OnItemClickListener
                 gist.setComments(gist.getComments() + 1);
                 updateList(gist, comments);
             } else
-                refreshGist();
+                refreshGist(false);
             return;
         case COMMENT_EDIT:
             comment = (Comment) data.getSerializableExtra(EXTRA_COMMENT);
@@ -358,7 +358,7 @@ public class GistFragment extends DialogFragment implements OnItemClickListener
                 comments.set(position, comment);
                 updateList(gist, comments);
             } else
-                refreshGist();
+                refreshGist(false);
             return;
         }
 
@@ -402,8 +402,8 @@ public class GistFragment extends DialogFragment implements OnItemClickListener
         updateFiles(gist);
     }
 
-    private void refreshGist() {
-        new RefreshGistTask(getActivity(), gistId, imageGetter) {
+    private void refreshGist(final boolean force) {
+        new RefreshGistTask(getActivity(), gistId, imageGetter, force) {
 
             @Override
             protected void onException(Exception e) throws RuntimeException {
@@ -411,6 +411,16 @@ public class GistFragment extends DialogFragment implements OnItemClickListener
                 ToastUtils.show(getActivity(), e, R.string.error_gist_load);
             }
 
+            @Override
+            protected void onStoredGistLoaded(Gist stored) {
+                if (!isUsable() || gist != null)
+                    return;
+
+                gist = stored;
+                updateHeader(stored);
+                updateFiles(stored);
+            }
+
             @SuppressWarnings("unchecked")
             @Override
             protected void onSuccess(FullGist fullGist) throws Exception {
@@ -469,7 +479,7 @@ public class GistFragment extends DialogFragment implements OnItemClickListener
                         comments.remove(position);
                         updateList(gist, comments);
                     } else
-                        refreshGist();
+                        refreshGist(false);
                 }
             }.start();
             break;
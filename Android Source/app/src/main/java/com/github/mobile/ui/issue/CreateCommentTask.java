@@ -22,7 +22,6 @@ import android.util.Log;
 
 import com.github.mobile.R;
 import com.github.mobile.ui.ProgressDialogTask;
-import com.github.mobile.util.HtmlUtils;
 import com.github.mobile.util.ToastUtils;
 import com.google.inject.Inject;
 
@@ -67,11 +66,8 @@ public class CreateCommentTask extends ProgressDialogTask<Comment> {
 
     @Override
     protected Comment run(Account account) throws Exception {
-        Comment created = service.createComment(repository, issueNumber,
+        return service.createComment(repository, issueNumber,
                 comment);
-        String formatted = HtmlUtils.format(created.getBodyHtml()).toString();
-        created.setBodyHtml(formatted);
-        return created;
     }
 
     /**
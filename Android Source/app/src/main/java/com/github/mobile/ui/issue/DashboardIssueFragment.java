@@ -94,7 +94,7 @@ public class DashboardIssueFragment extends PagedItemFragment<RepositoryIssue> {
             }
 
             @Override
-            protected Object getId(RepositoryIssue resource) {
+            protected long getLongId(RepositoryIssue resource) {
                 return resource.getId();
             }
 
@@ -22,7 +22,6 @@ import android.util.Log;
 
 import com.github.mobile.R;
 import com.github.mobile.ui.ProgressDialogTask;
-import com.github.mobile.util.HtmlUtils;
 import com.github.mobile.util.ToastUtils;
 import com.google.inject.Inject;
 
@@ -63,10 +62,7 @@ public class EditCommentTask extends ProgressDialogTask<Comment> {
 
     @Override
     protected Comment run(Account account) throws Exception {
-        Comment edited = service.editComment(repository, comment);
-        String formatted = HtmlUtils.format(edited.getBodyHtml()).toString();
-        edited.setBodyHtml(formatted);
-        return edited;
+        return service.editComment(repository, comment);
     }
 
     /**
@@ -458,6 +458,24 @@ public class IssueFragment extends DialogFragment {
                 ViewUtils.setGone(progress, true);
             }
 
+            @Override
+            protected void onStoredIssueLoaded(Issue stored) {
+                if (!isUsable() || issue != null)
+                    return;
+
+                issue = stored;
+                updateHeader(stored);
+            }
+
+            @Override
+            protected void onCommentsLoaded(List<Comment> loaded) {
+                // Show comments as they load unless a full list is shown
+                if (!isUsable() || items != null)
+                    return;
+
+                adapter.getWrappedAdapter().setItems(loaded);
+            }
+
             @Override
             protected void onSuccess(FullIssue fullIssue) throws Exception {
                 super.onSuccess(fullIssue);
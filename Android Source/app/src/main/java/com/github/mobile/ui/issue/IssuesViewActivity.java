@@ -32,6 +32,7 @@ import com.github.mobile.Intents.Builder;
 import com.github.mobile.R;
 import com.github.mobile.accounts.AccountUtils;
 import com.github.mobile.accounts.AuthenticatedUserTask;
+import com.github.mobile.core.issue.IssueHandoff;
 import com.github.mobile.core.issue.IssueStore;
 import com.github.mobile.core.issue.IssueUtils;
 import com.github.mobile.core.repo.RefreshRepositoryTask;
@@ -46,6 +47,7 @@ import com.google.inject.Inject;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -65,6 +67,8 @@ public class IssuesViewActivity extends PagerActivity {
 
     private static final String EXTRA_PULL_REQUESTS = "pullRequests";
 
+    private static final String EXTRA_ISSUES = "issues";
+
     /**
      * Create an intent to show a single issue
      *
@@ -97,18 +101,8 @@ public class IssuesViewActivity extends PagerActivity {
      */
     public static Intent createIntent(final Collection<? extends Issue> issues,
         final Repository repository, final int position) {
-        int[] numbers = new int[issues.size()];
-        boolean[] pullRequests = new boolean[issues.size()];
-        int index = 0;
-        for (Issue issue : issues) {
-            numbers[index] = issue.getNumber();
-            pullRequests[index] = IssueUtils.isPullRequest(issue);
-            index++;
-        }
-        return new Builder("issues.VIEW").add(EXTRA_ISSUE_NUMBERS, numbers)
-            .add(EXTRA_REPOSITORY, repository)
-            .add(EXTRA_POSITION, position)
-            .add(EXTRA_PULL_REQUESTS, pullRequests).toIntent();
+        return createBuilder(issues, position)
+            .add(EXTRA_REPOSITORY, repository).toIntent();
     }
 
     /**
@@ -120,38 +114,44 @@ public class IssuesViewActivity extends PagerActivity {
      */
     public static Intent createIntent(Collection<? extends Issue> issues,
         int position) {
-        final int count = issues.size();
-        int[] numbers = new int[count];
-        boolean[] pullRequests = new boolean[count];
-        ArrayList<RepositoryId> repos = new ArrayList<>(count);
-        int index = 0;
-        for (Issue issue : issues) {
-            numbers[index] = issue.getNumber();
-            pullRequests[index] = IssueUtils.isPullRequest(issue);
-            index++;
-
-            RepositoryId repoId = null;
-            if (issue instanceof RepositoryIssue) {
-                Repository issueRepo = ((RepositoryIssue) issue)
-                    .getRepository();
-                if (issueRepo != null) {
-                    User owner = issueRepo.getOwner();
-                    if (owner != null)
-                        repoId = RepositoryId.create(owner.getLogin(),
-                            issueRepo.getName());
-                }
-            }
-            if (repoId == null)
-                repoId = RepositoryId.createFromUrl(issue.getHtmlUrl());
-            repos.add(repoId);
-        }
+        Issue issue = getIssue(issues, position);
+        ArrayList<RepositoryId> repos = new ArrayList<>(1);
+        repos.add(IssueHandoff.getRepositoryId(issue));
+        return createBuilder(issues, position).add(EXTRA_REPOSITORIES, repos)
+            .toIntent();
+    }
 
+    /**
+     * Create builder with the selected issue and a handle to all issues
+     * <p>
+     * Only the selected issue is put in the extras so the intent size does
+     * not depend on the number of issues, it is shown alone if the handle is
+     * no longer registered when the activity is created.
+     */
+    private static Builder createBuilder(
+        final Collection<? extends Issue> issues, final int position) {
+        Issue issue = getIssue(issues, position);
         Builder builder = new Builder("issues.VIEW");
-        builder.add(EXTRA_ISSUE_NUMBERS, numbers);
-        builder.add(EXTRA_REPOSITORIES, repos);
-        builder.add(EXTRA_POSITION, position);
-        builder.add(EXTRA_PULL_REQUESTS, pullRequests);
-        return builder.toIntent();
+        builder.add(EXTRA_ISSUE_NUMBERS, new int[] { issue.getNumber() });
+        builder.add(EXTRA_PULL_REQUESTS,
+            new boolean[] { IssueUtils.isPullRequest(issue) });
+        if (issues.size() > 1) {
+            builder.add(EXTRA_ISSUES, IssueHandoff.put(issues));
+            builder.add(EXTRA_POSITION, position);
+        } else
+            builder.add(EXTRA_POSITION, 0);
+        return builder;
+    }
+
+    private static Issue getIssue(final Collection<? extends Issue> issues,
+        final int position) {
+        if (issues instanceof List)
+            return ((List<? extends Issue>) issues).get(position);
+
+        Iterator<? extends Issue> iterator = issues.iterator();
+        for (int i = 0; i < position; i++)
+            iterator.next();
+        return iterator.next();
     }
 
     private ViewPager pager;
@@ -160,7 +160,9 @@ public class IssuesViewActivity extends PagerActivity {
 
     private boolean[] pullRequests;
 
-    private ArrayList<RepositoryId> repoIds;
+    private List<RepositoryId> repoIds;
+
+    private int initialPosition;
 
     private Repository repo;
 
@@ -188,10 +190,20 @@ public class IssuesViewActivity extends PagerActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        issueNumbers = getIntArrayExtra(EXTRA_ISSUE_NUMBERS);
-        pullRequests = getBooleanArrayExtra(EXTRA_PULL_REQUESTS);
-        repoIds = getSerializableExtra(EXTRA_REPOSITORIES);
         repo = getSerializableExtra(EXTRA_REPOSITORY);
+        IssueHandoff issues = IssueHandoff.get(getLongExtra(EXTRA_ISSUES));
+        if (issues != null) {
+            issueNumbers = issues.getNumbers();
+            pullRequests = issues.getPullRequests();
+            if (repo == null)
+                repoIds = issues.getRepositoryIds();
+            initialPosition = getIntExtra(EXTRA_POSITION);
+        } else {
+            issueNumbers = getIntArrayExtra(EXTRA_ISSUE_NUMBERS);
+            pullRequests = getBooleanArrayExtra(EXTRA_PULL_REQUESTS);
+            repoIds = getSerializableExtra(EXTRA_REPOSITORIES);
+            initialPosition = 0;
+        }
 
         setContentView(R.layout.pager);
 
@@ -234,7 +246,6 @@ public class IssuesViewActivity extends PagerActivity {
     }
 
     private void configurePager() {
-        int initialPosition = getIntExtra(EXTRA_POSITION);
         pager = finder.find(R.id.vp_pages);
 
         if (repo != null)
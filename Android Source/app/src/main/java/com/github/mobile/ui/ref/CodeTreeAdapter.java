@@ -89,8 +89,8 @@ public class CodeTreeAdapter extends MultiTypeAdapter {
     public void setItems(final Folder root) {
         clear();
 
-        addItems(TYPE_TREE, root.folders.values());
-        addItems(TYPE_BLOB, root.files.values());
+        addItems(TYPE_TREE, root.getFolders());
+        addItems(TYPE_BLOB, root.getFiles());
     }
 
     @Override
@@ -160,8 +160,13 @@ public class CodeTreeAdapter extends MultiTypeAdapter {
         case TYPE_TREE:
             Folder folder = (Folder) item;
             setText(0, CommitUtils.getName(folder.name));
-            setNumber(1, folder.folders.size());
-            setNumber(2, folder.files.size());
+            if (folder.isLoaded()) {
+                setNumber(1, folder.getFolderCount());
+                setNumber(2, folder.getFileCount());
+            } else {
+                setText(1, null);
+                setText(2, null);
+            }
             break;
         }
     }
@@ -18,9 +18,12 @@ package com.github.mobile.ui.repo;
 import static java.lang.String.CASE_INSENSITIVE_ORDER;
 import android.content.Context;
 import android.os.AsyncTask;
+import android.util.Log;
 
+import com.github.mobile.RequestCodec;
 import com.github.mobile.RequestReader;
 import com.github.mobile.RequestWriter;
+import com.google.gson.reflect.TypeToken;
 
 import java.io.File;
 import java.io.Serializable;
@@ -43,11 +46,21 @@ public class RecentRepositories implements Comparator<Repository>, Serializable
 
     private static final long serialVersionUID = 580345177644233739L;
 
+    private static final String TAG = "RecentRepositories";
+
     private static final int VERSION = 2;
 
+    private static final RequestCodec CODEC = RequestCodec
+            .json(new TypeToken<LinkedHashSet<Long>>() {
+            }.getType());
+
     private static File getFile(final Context context, final User organization) {
-        return new File(context.getFilesDir(), "recent-repos-"
-                + organization.getId() + ".ser");
+        String name = "recent-repos-" + organization.getId();
+        File file = new File(context.getFilesDir(), name + ".json");
+        File legacy = new File(context.getFilesDir(), name + ".ser");
+        if (!file.exists() && legacy.exists() && !legacy.renameTo(file))
+            Log.d(TAG, "Unable to rename " + legacy.getName());
+        return file;
     }
 
     private LinkedHashSet<Long> ids;
@@ -68,7 +81,8 @@ public class RecentRepositories implements Comparator<Repository>, Serializable
     }
 
     private void load() {
-        LinkedHashSet<Long> loaded = new RequestReader(file, VERSION).read();
+        LinkedHashSet<Long> loaded = new RequestReader(file, VERSION, CODEC)
+                .read();
         if (loaded == null)
             loaded = new LinkedHashSet<Long>();
         ids = loaded;
@@ -157,7 +171,7 @@ public class RecentRepositories implements Comparator<Repository>, Serializable
     public RecentRepositories save() {
         final LinkedHashSet<Long> save = ids;
         if (save != null)
-            new RequestWriter(file, VERSION).write(save);
+            new RequestWriter(file, VERSION, CODEC).write(save);
         return this;
     }
 
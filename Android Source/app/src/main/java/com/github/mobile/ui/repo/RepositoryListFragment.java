@@ -31,8 +31,10 @@ import android.widget.ListView;
 import com.github.kevinsawicki.wishlist.SingleTypeAdapter;
 import com.github.kevinsawicki.wishlist.ViewFinder;
 import com.github.mobile.R;
-import com.github.mobile.ThrowableLoader;
-import com.github.mobile.persistence.AccountDataManager;
+import com.github.mobile.persistence.CachedResourceLoader;
+import com.github.mobile.persistence.DatabaseCache;
+import com.github.mobile.persistence.OrganizationRepositories;
+import com.github.mobile.persistence.PersistableResource;
 import com.github.mobile.ui.HeaderFooterListAdapter;
 import com.github.mobile.ui.ItemListFragment;
 import com.github.mobile.ui.LightAlertDialog;
@@ -56,7 +58,10 @@ public class RepositoryListFragment extends ItemListFragment<Repository>
     implements OrganizationSelectionListener {
 
     @Inject
-    private AccountDataManager cache;
+    private DatabaseCache cache;
+
+    @Inject
+    private OrganizationRepositories.Factory repos;
 
     @Inject
     private AvatarLoader avatars;
@@ -283,16 +288,17 @@ public class RepositoryListFragment extends ItemListFragment<Repository>
 
     @Override
     public Loader<List<Repository>> onCreateLoader(int id, final Bundle args) {
-        return new ThrowableLoader<List<Repository>>(getActivity(), items) {
+        return new CachedResourceLoader<Repository>(getActivity(), items,
+            cache, isForceRefresh(args)) {
 
             @Override
-            public List<Repository> loadData() throws Exception {
+            protected PersistableResource<Repository> getResource() {
                 User org = RepositoryListFragment.this.org.get();
-                if (org == null)
-                    return Collections.emptyList();
+                return org != null ? repos.under(org) : null;
+            }
 
-                List<Repository> repos = cache.getRepos(org,
-                    isForceRefresh(args));
+            @Override
+            protected List<Repository> process(List<Repository> repos) {
                 Collections.sort(repos, recentRepos);
                 updateHeaders(repos);
                 return repos;
@@ -66,7 +66,7 @@ public class UserRepositoryListFragment extends PagedItemFragment<Repository> {
         return new ResourcePager<Repository>() {
 
             @Override
-            protected Object getId(Repository resource) {
+            protected long getLongId(Repository resource) {
                 return resource.getId();
             }
 
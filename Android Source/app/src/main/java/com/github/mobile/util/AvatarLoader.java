@@ -15,15 +15,18 @@
  */
 package com.github.mobile.util;
 
+import static android.content.Context.ACTIVITY_SERVICE;
 import static android.graphics.Bitmap.CompressFormat.PNG;
 import static android.graphics.Bitmap.Config.ARGB_8888;
 import static android.view.View.VISIBLE;
+import android.app.ActivityManager;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory.Options;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.support.v4.util.LruCache;
 import android.support.v7.app.ActionBar;
 import android.text.TextUtils;
 import android.util.Log;
@@ -34,13 +37,18 @@ import com.github.mobile.R;
 import com.github.mobile.core.search.SearchUser;
 import com.google.inject.Inject;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.egit.github.core.CommitUser;
@@ -58,13 +66,39 @@ public class AvatarLoader {
 
     private static final float CORNER_RADIUS_IN_DIP = 3;
 
-    private static final int CACHE_SIZE = 75;
+    /**
+     * Fraction of the application's memory class used for decoded avatars
+     */
+    private static final int MEMORY_CACHE_DIVIDER = 16;
+
+    /**
+     * Maximum size in bytes of the avatars stored on disk
+     */
+    private static final long DISK_CACHE_SIZE = 10 * 1024 * 1024;
+
+    private static final int FETCH_THREADS = 4;
+
+    /**
+     * Queue that hands out the most recently submitted task first so avatars
+     * of rows that were just scrolled into view are fetched before those of
+     * rows that already left the screen
+     */
+    private static class LifoBlockingDeque<E> extends LinkedBlockingDeque<E> {
+
+        private static final long serialVersionUID = 2434547413446406226L;
+
+        @Override
+        public boolean offer(E e) {
+            return offerFirst(e);
+        }
+    }
 
     private static abstract class FetchAvatarTask extends
             RoboAsyncTask<BitmapDrawable> {
 
-        private static final Executor EXECUTOR = Executors
-                .newFixedThreadPool(1);
+        private static final Executor EXECUTOR = new ThreadPoolExecutor(
+                FETCH_THREADS, FETCH_THREADS, 60, TimeUnit.SECONDS,
+                new LifoBlockingDeque<Runnable>());
 
         private FetchAvatarTask(Context context) {
             super(context, EXECUTOR);
@@ -76,23 +110,91 @@ public class AvatarLoader {
         }
     }
 
-    private final float cornerRadius;
+    private static LruCache<Object, BitmapDrawable> memoryCache;
 
-    private final Map<Object, BitmapDrawable> loaded = new LinkedHashMap<Object, BitmapDrawable>(
-            CACHE_SIZE, 1.0F) {
+    /**
+     * Views waiting on an avatar fetch already in flight, keyed by user id
+     * <p>
+     * Only accessed from the UI thread
+     */
+    private static final Map<String, List<ImageView>> pending = new HashMap<String, List<ImageView>>();
 
-        private static final long serialVersionUID = -4191624209581976720L;
+    private static DiskCache diskCache;
 
-        @Override
-        protected boolean removeEldestEntry(
-                Map.Entry<Object, BitmapDrawable> eldest) {
-            return size() >= CACHE_SIZE;
+    /**
+     * Get disk cache of rounded avatars
+     * <p>
+     * Avatars stored by previous versions are deleted when the cache is first
+     * opened so this should only be called from a background thread
+     *
+     * @param context
+     * @return cache
+     */
+    private static synchronized DiskCache getDiskCache(final Context context) {
+        if (diskCache == null) {
+            File cacheDir = new File(context.getCacheDir(), "avatars");
+            diskCache = new DiskCache(new File(cacheDir, "rounded"),
+                    DISK_CACHE_SIZE);
+            deleteLegacyAvatars(new File(cacheDir, "github.com"));
         }
-    };
+        return diskCache;
+    }
 
-    private final Context context;
+    /**
+     * Delete avatars stored in per-user directories by previous versions
+     *
+     * @param dir
+     */
+    private static void deleteLegacyAvatars(final File dir) {
+        File[] userDirs = dir.listFiles();
+        if (userDirs == null)
+            return;
+        for (File userDir : userDirs) {
+            File[] files = userDir.listFiles();
+            if (files != null)
+                for (File file : files)
+                    file.delete();
+            userDir.delete();
+        }
+        dir.delete();
+    }
 
-    private final File avatarDir;
+    private static synchronized LruCache<Object, BitmapDrawable> getMemoryCache(
+            final Context context) {
+        if (memoryCache == null) {
+            ActivityManager manager = (ActivityManager) context
+                    .getSystemService(ACTIVITY_SERVICE);
+            int size = manager.getMemoryClass() * 1024 * 1024
+                    / MEMORY_CACHE_DIVIDER;
+            memoryCache = new LruCache<Object, BitmapDrawable>(size) {
+
+                @Override
+                protected int sizeOf(Object key, BitmapDrawable value) {
+                    return value.getBitmap().getByteCount();
+                }
+            };
+        }
+        return memoryCache;
+    }
+
+    /**
+     * Evict entries from the memory cache
+     * <p>
+     * This should be called from memory pressure callbacks
+     *
+     * @param fraction
+     *            fraction of the cache to keep, 0 to clear it
+     */
+    public static synchronized void trimMemory(final float fraction) {
+        if (memoryCache != null)
+            memoryCache.trimToSize((int) (memoryCache.maxSize() * fraction));
+    }
+
+    private final float cornerRadius;
+
+    private final LruCache<Object, BitmapDrawable> loaded;
+
+    private final Context context;
 
     private final Drawable loadingAvatar;
 
@@ -112,13 +214,11 @@ public class AvatarLoader {
     public AvatarLoader(final Context context) {
         this.context = context;
 
+        loaded = getMemoryCache(context);
+
         loadingAvatar = context.getResources().getDrawable(
                 R.drawable.gravatar_icon);
 
-        avatarDir = new File(context.getCacheDir(), "avatars/github.com");
-        if (!avatarDir.isDirectory())
-            avatarDir.mkdirs();
-
         float density = context.getResources().getDisplayMetrics().density;
         cornerRadius = CORNER_RADIUS_IN_DIP * density;
 
@@ -136,28 +236,26 @@ public class AvatarLoader {
         return array.getLayoutDimension(0, 100);
     }
 
-    private BitmapDrawable getImageBy(final String userId, final String filename) {
-        File avatarFile = new File(avatarDir + "/" + userId, filename);
+    private static String getKey(final String userId, final String filename) {
+        return DiskCache.getKey(userId + '/' + filename);
+    }
 
-        if (!avatarFile.exists() || avatarFile.length() == 0)
+    private BitmapDrawable getImageBy(final String userId, final String filename) {
+        DiskCache avatars = getDiskCache(context);
+        String key = getKey(userId, filename);
+        File avatarFile = avatars.get(key);
+        if (avatarFile == null)
             return null;
 
         Bitmap bitmap = decode(avatarFile);
         if (bitmap != null)
             return new BitmapDrawable(context.getResources(), bitmap);
         else {
-            avatarFile.delete();
+            avatars.remove(key);
             return null;
         }
     }
 
-    private void deleteCachedUserAvatars(final File userAvatarDir) {
-        if (userAvatarDir.isDirectory())
-            for (File userAvatar : userAvatarDir.listFiles())
-                userAvatar.delete();
-        userAvatarDir.delete();
-    }
-
     /**
      * Load an avatar from the given file and automatically rescale it to the
      * target dimensions to save memory.
@@ -181,50 +279,39 @@ public class AvatarLoader {
      */
     protected BitmapDrawable fetchAvatar(final String url,
             final String userId, final String cachedAvatarFilename) {
-        File userAvatarDir = new File(avatarDir, userId);
-        deleteCachedUserAvatars(userAvatarDir);
-        userAvatarDir.mkdirs();
-
-        File rawAvatar = new File(userAvatarDir, cachedAvatarFilename + "-raw");
         HttpRequest request = HttpRequest.get(url);
-        if (request.ok())
-            request.receive(rawAvatar);
+        if (!request.ok())
+            return null;
 
-        if (!rawAvatar.exists() || rawAvatar.length() == 0)
+        byte[] raw = request.bytes();
+        if (raw.length == 0)
             return null;
 
-        Bitmap bitmap = decode(rawAvatar);
-        if (bitmap == null) {
-            rawAvatar.delete();
+        Bitmap bitmap;
+        try {
+            bitmap = ImageUtils.getBitmap(new ByteArrayInputStream(raw),
+                    avatarSize, avatarSize);
+        } catch (IOException e) {
+            Log.d(TAG, "Exception decoding avatar", e);
             return null;
         }
+        if (bitmap == null)
+            return null;
 
         bitmap = ImageUtils.roundCorners(bitmap, cornerRadius);
-        if (bitmap == null) {
-            rawAvatar.delete();
+        if (bitmap == null)
             return null;
-        }
 
-        File roundedAvatar = new File(userAvatarDir, cachedAvatarFilename);
-        FileOutputStream output = null;
+        ByteArrayOutputStream output = new ByteArrayOutputStream(raw.length);
+        if (!bitmap.compress(PNG, 100, output))
+            return null;
         try {
-            output = new FileOutputStream(roundedAvatar);
-            if (bitmap.compress(PNG, 100, output))
-                return new BitmapDrawable(context.getResources(), bitmap);
-            else
-                return null;
+            getDiskCache(context).put(getKey(userId, cachedAvatarFilename),
+                    new ByteArrayInputStream(output.toByteArray()));
         } catch (IOException e) {
             Log.d(TAG, "Exception writing rounded avatar", e);
-            return null;
-        } finally {
-            if (output != null)
-                try {
-                    output.close();
-                } catch (IOException e) {
-                    // Ignored
-                }
-            rawAvatar.delete();
         }
+        return new BitmapDrawable(context.getResources(), bitmap);
     }
 
     /**
@@ -279,6 +366,9 @@ public class AvatarLoader {
 
             @Override
             protected void onSuccess(BitmapDrawable image) throws Exception {
+                if (image == null)
+                    return;
+                loaded.put(userId, image);
                 if (userId.equals(getId(userReference.get())))
                     actionBar.setLogo(image);
             }
@@ -357,7 +447,7 @@ public class AvatarLoader {
             return setImage(loadedImage, view);
 
         setImage(loadingAvatar, view, userId);
-        fetchAvatarTask(avatarUrl, userId, view).execute();
+        fetch(avatarUrl, userId, view);
 
         return this;
     }
@@ -385,7 +475,7 @@ public class AvatarLoader {
             return setImage(loadedImage, view);
 
         setImage(loadingAvatar, view, userId);
-        fetchAvatarTask(avatarUrl, userId, view).execute();
+        fetch(avatarUrl, userId, view);
 
         return this;
     }
@@ -413,7 +503,7 @@ public class AvatarLoader {
             return setImage(loadedImage, view);
 
         setImage(loadingAvatar, view, contributorId);
-        fetchAvatarTask(avatarUrl, contributorId, view).execute();
+        fetch(avatarUrl, contributorId, view);
 
         return this;
     }
@@ -441,18 +531,36 @@ public class AvatarLoader {
             return setImage(loadedImage, view);
 
         setImage(loadingAvatar, view, userId);
-        fetchAvatarTask(avatarUrl, userId, view).execute();
+        fetch(avatarUrl, userId, view);
 
         return this;
     }
 
-    private FetchAvatarTask fetchAvatarTask(final String avatarUrl,
-            final String userId, final ImageView view) {
-        return new FetchAvatarTask(context) {
+    /**
+     * Fetch avatar into view unless a fetch for the same user is already in
+     * flight in which case the view is updated once that fetch completes
+     *
+     * @param avatarUrl
+     * @param userId
+     * @param view
+     */
+    private void fetch(final String avatarUrl, final String userId,
+            final ImageView view) {
+        List<ImageView> views = pending.get(userId);
+        if (views != null) {
+            views.add(view);
+            return;
+        }
+
+        final List<ImageView> waiting = new CopyOnWriteArrayList<ImageView>();
+        waiting.add(view);
+        pending.put(userId, waiting);
+
+        new FetchAvatarTask(context) {
 
             @Override
             public BitmapDrawable call() throws Exception {
-                if (!userId.equals(view.getTag(R.id.iv_avatar)))
+                if (!isWaiting(userId, waiting))
                     return null;
 
                 final String avatarFilename = getAvatarFilenameForUrl(avatarUrl);
@@ -468,9 +576,23 @@ public class AvatarLoader {
                 if (image == null)
                     return;
                 loaded.put(userId, image);
-                if (userId.equals(view.getTag(R.id.iv_avatar)))
-                    setImage(image, view);
+                for (ImageView view : waiting)
+                    if (userId.equals(view.getTag(R.id.iv_avatar)))
+                        setImage(image, view);
             }
-        };
+
+            @Override
+            protected void onFinally() throws RuntimeException {
+                pending.remove(userId);
+            }
+        }.execute();
+    }
+
+    private static boolean isWaiting(final String userId,
+            final List<ImageView> views) {
+        for (ImageView view : views)
+            if (userId.equals(view.getTag(R.id.iv_avatar)))
+                return true;
+        return false;
     }
 }
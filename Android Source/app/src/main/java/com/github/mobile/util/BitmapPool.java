@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile.util;
+
+import static android.graphics.Color.TRANSPARENT;
+import static android.os.Build.VERSION.SDK_INT;
+import static android.os.Build.VERSION_CODES.KITKAT;
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.util.SparseArray;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+
+/**
+ * Pool of bitmaps that are no longer displayed and whose memory can be reused
+ * when decoding or creating other bitmaps
+ * <p>
+ * Bitmaps are bucketed by the power of two at or above their allocation size.
+ * Reuse of a bitmap with different dimensions requires KitKat so the pool is a
+ * no-op on earlier versions.
+ */
+@TargetApi(KITKAT)
+public class BitmapPool {
+
+    /**
+     * Maximum number of bytes of bitmaps held by the pool
+     */
+    private static final int MAX_SIZE = 4 * 1024 * 1024;
+
+    private static final SparseArray<LinkedList<Bitmap>> buckets = new SparseArray<LinkedList<Bitmap>>();
+
+    private static int size;
+
+    private static boolean isSupported() {
+        return SDK_INT >= KITKAT;
+    }
+
+    private static int getBucket(final int bytes) {
+        return Integer.highestOneBit(Math.max(1, bytes - 1)) << 1;
+    }
+
+    /**
+     * Get number of bytes per pixel of given config
+     *
+     * @param config
+     * @return bytes per pixel
+     */
+    public static int getBytesPerPixel(final Config config) {
+        if (config == null)
+            return 4;
+        switch (config) {
+        case ALPHA_8:
+            return 1;
+        case RGB_565:
+        case ARGB_4444:
+            return 2;
+        default:
+            return 4;
+        }
+    }
+
+    /**
+     * Add bitmap to pool
+     * <p>
+     * The bitmap must not be displayed anywhere anymore. It is recycled if it
+     * can't be pooled.
+     *
+     * @param bitmap
+     */
+    public static void put(final Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled())
+            return;
+
+        if (!isSupported() || !bitmap.isMutable()) {
+            bitmap.recycle();
+            return;
+        }
+
+        final int bytes = bitmap.getAllocationByteCount();
+        synchronized (buckets) {
+            if (bytes > MAX_SIZE) {
+                bitmap.recycle();
+                return;
+            }
+            while (size + bytes > MAX_SIZE)
+                evict();
+
+            final int bucket = getBucket(bytes);
+            LinkedList<Bitmap> bitmaps = buckets.get(bucket);
+            if (bitmaps == null) {
+                bitmaps = new LinkedList<Bitmap>();
+                buckets.put(bucket, bitmaps);
+            }
+            bitmaps.addFirst(bitmap);
+            size += bytes;
+        }
+    }
+
+    private static void evict() {
+        for (int i = 0; i < buckets.size(); i++) {
+            LinkedList<Bitmap> bitmaps = buckets.valueAt(i);
+            if (!bitmaps.isEmpty()) {
+                Bitmap bitmap = bitmaps.removeLast();
+                size -= bitmap.getAllocationByteCount();
+                bitmap.recycle();
+                return;
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * Take a bitmap from the pool that can hold at least the given number of
+     * bytes
+     *
+     * @param bytes
+     * @return bitmap or null if none available
+     */
+    public static Bitmap get(final int bytes) {
+        if (!isSupported())
+            return null;
+
+        synchronized (buckets) {
+            for (int bucket = getBucket(bytes); bucket > 0
+                    && bucket <= getBucket(MAX_SIZE); bucket <<= 1) {
+                LinkedList<Bitmap> bitmaps = buckets.get(bucket);
+                if (bitmaps == null)
+                    continue;
+                Iterator<Bitmap> iterator = bitmaps.iterator();
+                while (iterator.hasNext()) {
+                    Bitmap bitmap = iterator.next();
+                    if (bitmap.getAllocationByteCount() >= bytes) {
+                        iterator.remove();
+                        size -= bitmap.getAllocationByteCount();
+                        return bitmap;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Create a cleared, mutable bitmap reusing a pooled bitmap when possible
+     *
+     * @param width
+     * @param height
+     * @param config
+     * @return bitmap
+     */
+    public static Bitmap create(final int width, final int height,
+            final Config config) {
+        Bitmap bitmap = get(width * height * getBytesPerPixel(config));
+        if (bitmap != null)
+            try {
+                bitmap.reconfigure(width, height, config);
+                bitmap.eraseColor(TRANSPARENT);
+                return bitmap;
+            } catch (IllegalArgumentException e) {
+                bitmap.recycle();
+            }
+        return Bitmap.createBitmap(width, height, config);
+    }
+
+    /**
+     * Release all pooled bitmaps
+     */
+    public static void clear() {
+        synchronized (buckets) {
+            for (int i = 0; i < buckets.size(); i++)
+                for (Bitmap bitmap : buckets.valueAt(i))
+                    bitmap.recycle();
+            buckets.clear();
+            size = 0;
+        }
+    }
+}
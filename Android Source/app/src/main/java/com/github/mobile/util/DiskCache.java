@@ -0,0 +1,249 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile.util;
+
+import static java.util.Locale.US;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Size-bounded cache of files in a single directory
+ * <p>
+ * Files are evicted in least recently used order, tracked through their last
+ * modified time which is refreshed on every hit. Files are written to a
+ * separate temporary directory that eviction never touches and that is
+ * emptied when the cache is created.
+ */
+public class DiskCache {
+
+    private static final String TAG = "DiskCache";
+
+    /**
+     * Get file-name safe key for given value
+     *
+     * @param value
+     * @return hex-encoded SHA-1 digest of the value
+     */
+    public static String getKey(final String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(value.getBytes("UTF-8"));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash)
+                key.append(String.format(US, "%02x", b & 0xff));
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(value.hashCode());
+        } catch (IOException e) {
+            return Integer.toHexString(value.hashCode());
+        }
+    }
+
+    private final File dir;
+
+    private final File tempDir;
+
+    private final long maxSize;
+
+    private long size = -1;
+
+    /**
+     * Create cache of files in given directory
+     *
+     * @param dir
+     * @param maxSize
+     *            maximum size in bytes of all files in the directory
+     */
+    public DiskCache(final File dir, final long maxSize) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+        tempDir = new File(dir, "tmp");
+
+        // Left behind by writes interrupted by the process being killed
+        File[] stale = tempDir.listFiles();
+        if (stale != null)
+            for (File file : stale)
+                file.delete();
+    }
+
+    /**
+     * Get cached file
+     *
+     * @param key
+     * @return file or null if not cached
+     */
+    public File get(final String key) {
+        File file = new File(dir, key);
+        if (!file.isFile() || file.length() == 0)
+            return null;
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Store stream contents under given key
+     * <p>
+     * The contents are written to a unique temporary file that replaces the
+     * stored file once complete so concurrent writers of the same key and
+     * interrupted writes never leave a partial file under the key.
+     *
+     * @param key
+     * @param input
+     * @return stored file
+     * @throws IOException
+     */
+    public File put(final String key, final InputStream input)
+            throws IOException {
+        if (!tempDir.isDirectory())
+            tempDir.mkdirs();
+
+        File temp = File.createTempFile(key, ".tmp", tempDir);
+        try {
+            FileOutputStream output = new FileOutputStream(temp);
+            try {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = input.read(buffer)) != -1)
+                    output.write(buffer, 0, read);
+                output.flush();
+                output.getFD().sync();
+            } finally {
+                output.close();
+            }
+
+            File file = new File(dir, key);
+            long previous = file.length();
+            if (!temp.renameTo(file))
+                throw new IOException("Unable to store " + file.getName());
+            temp = null;
+            update(file.length() - previous);
+            return file;
+        } finally {
+            if (temp != null)
+                temp.delete();
+        }
+    }
+
+    /**
+     * Store value under given key
+     *
+     * @param key
+     * @param value
+     * @throws IOException
+     */
+    public void put(final String key, final String value) throws IOException {
+        put(key, new ByteArrayInputStream(value.getBytes("UTF-8")));
+    }
+
+    /**
+     * Remove file stored under given key
+     *
+     * @param key
+     */
+    public void remove(final String key) {
+        File file = new File(dir, key);
+        long length = file.length();
+        if (file.delete())
+            update(-length);
+    }
+
+    /**
+     * Get value stored under given key
+     *
+     * @param key
+     * @return value or null if not cached
+     * @throws IOException
+     */
+    public String getString(final String key) throws IOException {
+        File file = get(key);
+        if (file == null)
+            return null;
+
+        InputStream input = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(
+                    (int) file.length());
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1)
+                output.write(buffer, 0, read);
+            return output.toString("UTF-8");
+        } finally {
+            input.close();
+        }
+    }
+
+    private synchronized void update(final long delta) {
+        if (size < 0) {
+            size = 0;
+            for (File file : listFiles())
+                size += file.length();
+        } else
+            size += delta;
+
+        if (size <= maxSize)
+            return;
+
+        List<File> files = listFiles();
+        final Map<File, Long> lastUsed = new HashMap<File, Long>(files.size());
+        for (File file : files)
+            lastUsed.put(file, file.lastModified());
+        Collections.sort(files, new Comparator<File>() {
+
+            @Override
+            public int compare(File lhs, File rhs) {
+                return lastUsed.get(lhs).compareTo(lastUsed.get(rhs));
+            }
+        });
+
+        // Trim to three quarters of the limit to not evict on every write
+        long target = maxSize * 3 / 4;
+        for (File file : files) {
+            if (size <= target)
+                break;
+            long length = file.length();
+            if (file.delete())
+                size -= length;
+        }
+        Log.d(TAG, "Trimmed " + dir.getName() + " to " + size + " bytes");
+    }
+
+    private List<File> listFiles() {
+        File[] files = dir.listFiles();
+        if (files == null)
+            return Collections.emptyList();
+        List<File> stored = new ArrayList<File>(files.length);
+        for (File file : files)
+            if (file.isFile())
+                stored.add(file);
+        return stored;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Utilities for running requests concurrently in the background
+ * <p>
+ * Requests share a single pool so concurrent loads across screens are
+ * bounded. Tasks submitted to the pool must never wait on other tasks
+ * submitted to it.
+ */
+public class FutureUtils {
+
+    private static final int BACKGROUND_THREADS = 8;
+
+    private static final ExecutorService EXECUTOR = Executors
+            .newFixedThreadPool(BACKGROUND_THREADS);
+
+    /**
+     * Run callable on the shared background pool
+     *
+     * @param callable
+     * @return future result
+     */
+    public static <V> Future<V> submit(final Callable<V> callable) {
+        return EXECUTOR.submit(callable);
+    }
+
+    /**
+     * Wait for result of future
+     * <p>
+     * The cause of a failed execution is rethrown when it is an
+     * {@link IOException} or {@link RuntimeException} and wrapped in an
+     * {@link IOException} otherwise
+     *
+     * @param future
+     * @return result
+     * @throws IOException
+     */
+    public static <V> V get(final Future<V> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw new IOException(cause.getMessage());
+        }
+    }
+}
@@ -0,0 +1,714 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile.util;
+
+import static android.graphics.Typeface.BOLD;
+import static android.graphics.Typeface.ITALIC;
+import static android.text.Spanned.SPAN_EXCLUSIVE_EXCLUSIVE;
+import android.graphics.drawable.Drawable;
+import android.text.Html.ImageGetter;
+import android.text.style.ImageSpan;
+import android.text.style.RelativeSizeSpan;
+import android.text.style.StrikethroughSpan;
+import android.text.style.StyleSpan;
+import android.text.style.SubscriptSpan;
+import android.text.style.SuperscriptSpan;
+import android.text.style.TypefaceSpan;
+import android.text.style.URLSpan;
+import android.text.style.UnderlineSpan;
+
+import com.github.mobile.ui.StyledText;
+import com.github.mobile.util.HtmlUtils.ReplySpan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single pass renderer of GitHub HTML into styled text
+ * <p>
+ * E-mail toggles, signatures and hidden replies are dropped, quoted replies
+ * are rendered as block quotes and whitespace in e-mail fragments and pre
+ * elements is kept while tokenizing. The spans produced are the same as those
+ * of {@link android.text.Html}, without building an intermediate string or
+ * document.
+ */
+class HtmlRenderer {
+
+    private static final String CLASS_TOGGLE = "email-hidden-toggle";
+
+    private static final String CLASS_REPLY = "email-quoted-reply";
+
+    private static final String CLASS_SIGNATURE = "email-signature-reply";
+
+    private static final String CLASS_HIDDEN_REPLY = "email-hidden-reply";
+
+    private static final String CLASS_FRAGMENT = "email-fragment";
+
+    private static final String[] TAGS = { "a", "b", "big", "blockquote",
+            "br", "cite", "code", "dd", "del", "dfn", "div", "dl", "em",
+            "h1", "h2", "h3", "h4", "h5", "h6", "i", "img", "li", "ol", "p",
+            "pre", "s", "script", "small", "span", "strike", "strong",
+            "style", "sub", "sup", "tt", "u", "ul" };
+
+    private static final float[] HEADER_SIZES = { 1.5F, 1.4F, 1.3F, 1.2F,
+            1.1F, 1F };
+
+    private static final String TAB = "\u00a0\u00a0\u00a0\u00a0";
+
+    private static final char SPACE = '\u00a0';
+
+    private static final char OBJECT = '\ufffc';
+
+    /**
+     * Kinds of open elements that need work done when they are closed
+     */
+    private static final int BLOCK = 1;
+
+    private static final int PRE = 2;
+
+    private static final int FRAGMENT = 3;
+
+    private static final int LIST = 4;
+
+    private static class Element {
+
+        private final String tag;
+
+        private final int start;
+
+        private final Object[] spans;
+
+        private final int kind;
+
+        private Element(final String tag, final int start, final int kind,
+                final Object... spans) {
+            this.tag = tag;
+            this.start = start;
+            this.kind = kind;
+            this.spans = spans;
+        }
+    }
+
+    private static class ListSeparator {
+
+        private int count;
+
+        private ListSeparator(final boolean ordered) {
+            count = ordered ? 1 : -1;
+        }
+    }
+
+    private final String html;
+
+    private final ImageGetter imageGetter;
+
+    private final StringBuilder text;
+
+    private final List<Element> open = new ArrayList<Element>();
+
+    private final List<ListSeparator> lists = new ArrayList<ListSeparator>();
+
+    private final List<Object> spans = new ArrayList<Object>();
+
+    private int[] bounds = new int[32];
+
+    private int tagStart;
+
+    private int tagEnd;
+
+    private int preDepth;
+
+    private int fragmentDepth;
+
+    /**
+     * Create renderer for given HTML
+     *
+     * @param html
+     * @param imageGetter
+     *            may be null to skip images
+     */
+    HtmlRenderer(final String html, final ImageGetter imageGetter) {
+        this.html = html;
+        this.imageGetter = imageGetter;
+        text = new StringBuilder(html.length());
+    }
+
+    /**
+     * Render the HTML
+     *
+     * @return styled text
+     */
+    StyledText render() {
+        final String html = this.html;
+        final int length = html.length();
+        int i = 0;
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c == '<')
+                i = tag(i);
+            else if (c == '&')
+                i = entity(i);
+            else {
+                character(c, i);
+                i++;
+            }
+        }
+
+        // Close anything left open
+        for (int e = open.size() - 1; e >= 0; e--)
+            close(open.remove(e));
+
+        return build();
+    }
+
+    private void character(final char c, final int index) {
+        if (preDepth > 0) {
+            switch (c) {
+            case ' ':
+                text.append(SPACE);
+                return;
+            case '\t':
+                text.append(TAB);
+                return;
+            case '\r':
+                return;
+            case '\n':
+                // Ignore if last character in the pre element
+                if (!html.startsWith("</pre>", index + 1)
+                        && !html.startsWith("</code></pre>", index + 1))
+                    text.append('\n');
+                return;
+            default:
+                text.append(c);
+                return;
+            }
+        }
+
+        if (c == '\n' && fragmentDepth > 0) {
+            text.append('\n');
+            return;
+        }
+
+        if (c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f') {
+            int last = text.length() - 1;
+            if (last >= 0 && text.charAt(last) != ' '
+                    && text.charAt(last) != '\n')
+                text.append(' ');
+            return;
+        }
+
+        text.append(c);
+    }
+
+    private int entity(final int start) {
+        final String html = this.html;
+        int end = html.indexOf(';', start);
+        if (end == -1 || end - start > 10) {
+            text.append('&');
+            return start + 1;
+        }
+
+        char decoded = 0;
+        if (html.charAt(start + 1) == '#') {
+            int codePoint;
+            try {
+                if (end > start + 2
+                        && (html.charAt(start + 2) == 'x' || html
+                                .charAt(start + 2) == 'X'))
+                    codePoint = Integer.parseInt(
+                            html.substring(start + 3, end), 16);
+                else
+                    codePoint = Integer.parseInt(
+                            html.substring(start + 2, end), 10);
+            } catch (NumberFormatException e) {
+                codePoint = 0;
+            }
+            if (codePoint > Character.MAX_VALUE
+                    && Character.isValidCodePoint(codePoint)) {
+                // Supplementary characters such as emoji need a surrogate pair
+                text.append(Character.toChars(codePoint));
+                return end + 1;
+            }
+            if (codePoint > 0 && codePoint <= Character.MAX_VALUE)
+                decoded = (char) codePoint;
+        } else
+            decoded = named(start + 1, end);
+
+        if (decoded == 0) {
+            text.append('&');
+            return start + 1;
+        }
+
+        if (decoded == SPACE || preDepth > 0)
+            text.append(decoded);
+        else
+            character(decoded, start);
+        return end + 1;
+    }
+
+    private char named(final int start, final int end) {
+        final int length = end - start;
+        if (matches("amp", start, length))
+            return '&';
+        if (matches("lt", start, length))
+            return '<';
+        if (matches("gt", start, length))
+            return '>';
+        if (matches("quot", start, length))
+            return '"';
+        if (matches("apos", start, length) || matches("rsquo", start, length))
+            return '\u2019';
+        if (matches("nbsp", start, length))
+            return SPACE;
+        if (matches("lsquo", start, length))
+            return '\u2018';
+        if (matches("ldquo", start, length))
+            return '\u201c';
+        if (matches("rdquo", start, length))
+            return '\u201d';
+        if (matches("hellip", start, length))
+            return '\u2026';
+        if (matches("mdash", start, length))
+            return '\u2014';
+        if (matches("ndash", start, length))
+            return '\u2013';
+        if (matches("copy", start, length))
+            return '\u00a9';
+        if (matches("reg", start, length))
+            return '\u00ae';
+        if (matches("trade", start, length))
+            return '\u2122';
+        return 0;
+    }
+
+    private boolean matches(final String name, final int start,
+            final int length) {
+        return name.length() == length
+                && html.regionMatches(start, name, 0, length);
+    }
+
+    private int tag(final int start) {
+        final String html = this.html;
+        if (html.startsWith("<!--", start)) {
+            int end = html.indexOf("-->", start + 4);
+            return end != -1 ? end + 3 : html.length();
+        }
+
+        int end = html.indexOf('>', start);
+        if (end == -1) {
+            character('<', start);
+            return start + 1;
+        }
+
+        boolean closing = start + 1 < end && html.charAt(start + 1) == '/';
+        int nameStart = closing ? start + 2 : start + 1;
+        int nameEnd = nameStart;
+        while (nameEnd < end) {
+            char c = html.charAt(nameEnd);
+            if (c == ' ' || c == '/' || c == '\t' || c == '\n' || c == '\r')
+                break;
+            nameEnd++;
+        }
+        tagStart = nameEnd;
+        tagEnd = end;
+
+        String tag = lookup(nameStart, nameEnd - nameStart);
+        if (tag == null)
+            return end + 1;
+
+        if (closing) {
+            closeTag(tag);
+            return end + 1;
+        }
+
+        boolean empty = html.charAt(end - 1) == '/';
+        if (!empty && isHidden(tag))
+            return skip(tag, end + 1);
+
+        openTag(tag);
+        if (empty && !open.isEmpty() && open.get(open.size() - 1).tag == tag)
+            closeTag(tag);
+        return end + 1;
+    }
+
+    /**
+     * Is the current element never displayed?
+     *
+     * @param tag
+     * @return true if hidden, false otherwise
+     */
+    private boolean isHidden(final String tag) {
+        if (tag == "script" || tag == "style")
+            return true;
+        if (tag == "span")
+            return hasClass(CLASS_TOGGLE);
+        if (tag == "div")
+            return hasClass(CLASS_SIGNATURE) || hasClass(CLASS_HIDDEN_REPLY);
+        return false;
+    }
+
+    /**
+     * Find supported tag with given name
+     * <p>
+     * The constant from {@link #TAGS} is returned so tags can be compared by
+     * identity while rendering
+     *
+     * @param start
+     * @param length
+     * @return tag or null if unsupported
+     */
+    private String lookup(final int start, final int length) {
+        for (String tag : TAGS)
+            if (tag.length() == length
+                    && html.regionMatches(true, start, tag, 0, length))
+                return tag;
+        return null;
+    }
+
+    /**
+     * Skip past the end of the element with the given tag, honoring nested
+     * elements of the same tag
+     *
+     * @param tag
+     * @param from
+     * @return index after skipped element
+     */
+    private int skip(final String tag, final int from) {
+        final String html = this.html;
+        final int length = html.length();
+        int depth = 1;
+        int i = from;
+        while (i < length) {
+            int start = html.indexOf('<', i);
+            if (start == -1)
+                return length;
+            int end = html.indexOf('>', start);
+            if (end == -1)
+                return length;
+
+            boolean closing = html.charAt(start + 1) == '/';
+            int nameStart = closing ? start + 2 : start + 1;
+            if (html.regionMatches(true, nameStart, tag, 0, tag.length())) {
+                int after = nameStart + tag.length();
+                char next = after < length ? html.charAt(after) : '>';
+                if (next == '>' || next == ' ' || next == '/' || next == '\n'
+                        || next == '\t') {
+                    if (closing)
+                        depth--;
+                    else if (html.charAt(end - 1) != '/')
+                        depth++;
+                }
+            }
+            i = end + 1;
+            if (depth == 0)
+                break;
+        }
+        return i;
+    }
+
+    private String getAttribute(final String name) {
+        final String html = this.html;
+        final int length = name.length();
+        int i = tagStart;
+        while (i < tagEnd) {
+            int found = indexOfIgnoreCase(name, i);
+            if (found == -1)
+                return null;
+
+            int after = found + length;
+            char before = html.charAt(found - 1);
+            if (before != ' ' && before != '\t' && before != '\n') {
+                i = after;
+                continue;
+            }
+            while (after < tagEnd && html.charAt(after) == ' ')
+                after++;
+            if (after >= tagEnd || html.charAt(after) != '=') {
+                i = after;
+                continue;
+            }
+            after++;
+            while (after < tagEnd && html.charAt(after) == ' ')
+                after++;
+            if (after >= tagEnd)
+                return null;
+
+            char quote = html.charAt(after);
+            if (quote == '"' || quote == '\'') {
+                int end = html.indexOf(quote, after + 1);
+                if (end == -1 || end > tagEnd)
+                    end = tagEnd;
+                return decode(html.substring(after + 1, end));
+            }
+
+            int end = after;
+            while (end < tagEnd && html.charAt(end) != ' '
+                    && html.charAt(end) != '/')
+                end++;
+            return decode(html.substring(after, end));
+        }
+        return null;
+    }
+
+    private int indexOfIgnoreCase(final String name, final int from) {
+        final int last = tagEnd - name.length();
+        for (int i = from; i <= last; i++)
+            if (html.regionMatches(true, i, name, 0, name.length()))
+                return i;
+        return -1;
+    }
+
+    private static String decode(final String value) {
+        if (value.indexOf('&') == -1)
+            return value;
+        return value.replace("&amp;", "&").replace("&quot;", "\"")
+                .replace("&lt;", "<").replace("&gt;", ">");
+    }
+
+    private boolean hasClass(final String name) {
+        String value = getAttribute("class");
+        if (value == null)
+            return false;
+        int index = value.indexOf(name);
+        while (index != -1) {
+            int end = index + name.length();
+            if ((index == 0 || value.charAt(index - 1) == ' ')
+                    && (end == value.length() || value.charAt(end) == ' '))
+                return true;
+            index = value.indexOf(name, end);
+        }
+        return false;
+    }
+
+    private void openTag(final String tag) {
+        if (tag == "br" || tag == "p") {
+            // Paragraphs are rendered as line breaks
+            newline();
+            return;
+        }
+
+        if (tag == "img") {
+            image(getAttribute("src"));
+            return;
+        }
+
+        if (tag == "div") {
+            if (hasClass(CLASS_REPLY)) {
+                paragraph();
+                push(tag, BLOCK, new ReplySpan());
+            } else if (hasClass(CLASS_FRAGMENT)) {
+                fragmentDepth++;
+                push(tag, FRAGMENT);
+            } else {
+                paragraph();
+                push(tag, BLOCK);
+            }
+            return;
+        }
+
+        if (tag == "blockquote") {
+            paragraph();
+            push(tag, BLOCK, new ReplySpan());
+            return;
+        }
+
+        if (tag == "pre") {
+            text.append('\n');
+            preDepth++;
+            push(tag, PRE, new TypefaceSpan("monospace"));
+            return;
+        }
+
+        if (tag == "ul" || tag == "ol") {
+            lists.add(new ListSeparator(tag == "ol"));
+            push(tag, LIST);
+            return;
+        }
+
+        if (tag == "li") {
+            listItem();
+            return;
+        }
+
+        if (tag.length() == 2 && tag.charAt(0) == 'h') {
+            paragraph();
+            push(tag, BLOCK, new RelativeSizeSpan(
+                    HEADER_SIZES[tag.charAt(1) - '1']), new StyleSpan(BOLD));
+            return;
+        }
+
+        if (tag == "b" || tag == "strong")
+            push(tag, 0, new StyleSpan(BOLD));
+        else if (tag == "i" || tag == "em" || tag == "cite" || tag == "dfn")
+            push(tag, 0, new StyleSpan(ITALIC));
+        else if (tag == "u")
+            push(tag, 0, new UnderlineSpan());
+        else if (tag == "code" || tag == "tt")
+            push(tag, 0, new TypefaceSpan("monospace"));
+        else if (tag == "del" || tag == "s" || tag == "strike")
+            push(tag, 0, new StrikethroughSpan());
+        else if (tag == "big")
+            push(tag, 0, new RelativeSizeSpan(1.25F));
+        else if (tag == "small")
+            push(tag, 0, new RelativeSizeSpan(0.8F));
+        else if (tag == "sup")
+            push(tag, 0, new SuperscriptSpan());
+        else if (tag == "sub")
+            push(tag, 0, new SubscriptSpan());
+        else if (tag == "a") {
+            String href = getAttribute("href");
+            if (href != null)
+                push(tag, 0, new URLSpan(href));
+            else
+                push(tag, 0);
+        } else if (tag == "dd" || tag == "dl") {
+            newline();
+            push(tag, BLOCK);
+        } else
+            push(tag, 0);
+    }
+
+    private void closeTag(final String tag) {
+        for (int e = open.size() - 1; e >= 0; e--)
+            if (open.get(e).tag == tag) {
+                // Close any unclosed elements nested in this one
+                for (int n = open.size() - 1; n >= e; n--)
+                    close(open.remove(n));
+                return;
+            }
+
+        if (tag == "p")
+            newline();
+    }
+
+    private void push(final String tag, final int kind, final Object... spans) {
+        open.add(new Element(tag, text.length(), kind, spans));
+    }
+
+    private void close(final Element element) {
+        switch (element.kind) {
+        case PRE:
+            text.append('\n');
+            preDepth--;
+            break;
+        case FRAGMENT:
+            fragmentDepth--;
+            break;
+        case LIST:
+            lists.remove(lists.size() - 1);
+            if (lists.isEmpty())
+                text.append('\n');
+            break;
+        }
+
+        int end = text.length();
+        if (end > element.start)
+            for (Object span : element.spans)
+                addSpan(span, element.start, end);
+
+        if (element.kind == BLOCK)
+            paragraph();
+    }
+
+    private void addSpan(final Object span, final int start, final int end) {
+        int index = spans.size() * 2;
+        if (index + 1 >= bounds.length) {
+            int[] grown = new int[bounds.length * 2];
+            System.arraycopy(bounds, 0, grown, 0, bounds.length);
+            bounds = grown;
+        }
+        bounds[index] = start;
+        bounds[index + 1] = end;
+        spans.add(span);
+    }
+
+    private void newline() {
+        if (text.length() > 0)
+            text.append('\n');
+    }
+
+    /**
+     * Ensure the text ends with an empty line, as {@link android.text.Html}
+     * does for block elements
+     */
+    private void paragraph() {
+        int length = text.length();
+        if (length == 0)
+            return;
+        if (text.charAt(length - 1) != '\n')
+            text.append('\n').append('\n');
+        else if (length < 2 || text.charAt(length - 2) != '\n')
+            text.append('\n');
+    }
+
+    private void listItem() {
+        if (lists.isEmpty())
+            return;
+
+        int level = lists.size();
+        ListSeparator separator = lists.get(level - 1);
+        text.append('\n');
+        for (int i = 0; i < level * 2; i++)
+            text.append(' ');
+        if (separator.count != -1) {
+            text.append(separator.count).append('.');
+            separator.count++;
+        } else
+            text.append('\u2022');
+        text.append(' ').append(' ');
+    }
+
+    private void image(final String source) {
+        if (source == null || imageGetter == null)
+            return;
+
+        Drawable drawable = imageGetter.getDrawable(source);
+        if (drawable == null)
+            return;
+
+        int start = text.length();
+        text.append(OBJECT);
+        addSpan(new ImageSpan(drawable, source), start, start + 1);
+    }
+
+    private StyledText build() {
+        final StringBuilder text = this.text;
+        int start = 0;
+        int end = text.length();
+        // Only leading line breaks are trimmed so the indent of a leading list
+        // item is kept
+        while (start < end && text.charAt(start) == '\n')
+            start++;
+        while (end > start && isTrimmed(text.charAt(end - 1)))
+            end--;
+
+        StyledText styled = new StyledText();
+        styled.append(text, start, end);
+        final int length = end - start;
+        for (int i = 0; i < spans.size(); i++) {
+            int spanStart = Math.max(bounds[i * 2] - start, 0);
+            int spanEnd = Math.min(bounds[i * 2 + 1] - start, length);
+            if (spanEnd > spanStart)
+                styled.setSpan(spans.get(i), spanStart, spanEnd,
+                        SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        return styled;
+    }
+
+    private static boolean isTrimmed(final char c) {
+        return c == '\n' || c == ' ';
+    }
+}
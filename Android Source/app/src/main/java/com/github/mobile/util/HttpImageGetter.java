@@ -15,20 +15,26 @@
  */
 package com.github.mobile.util;
 
+import static android.content.Context.ACTIVITY_SERVICE;
 import static android.util.Base64.DEFAULT;
 import static android.view.View.GONE;
 import static android.view.View.VISIBLE;
 import static java.lang.Integer.MAX_VALUE;
 import static org.eclipse.egit.github.core.client.IGitHubConstants.HOST_DEFAULT;
 import android.accounts.Account;
+import android.app.ActivityManager;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.net.Uri;
+import android.support.v4.util.LruCache;
 import android.text.Html.ImageGetter;
+import android.text.Spanned;
 import android.text.TextUtils;
-import android.util.Base64;
+import android.text.style.ImageSpan;
+import android.util.Base64InputStream;
+import android.util.Log;
 import android.widget.TextView;
 
 import com.github.kevinsawicki.http.HttpRequest;
@@ -39,9 +45,19 @@ import com.google.inject.Inject;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.eclipse.egit.github.core.RepositoryContents;
 import org.eclipse.egit.github.core.RepositoryId;
@@ -52,6 +68,8 @@ import org.eclipse.egit.github.core.service.ContentsService;
  */
 public class HttpImageGetter implements ImageGetter {
 
+    private static final String TAG = "HttpImageGetter";
+
     private static class LoadingImageGetter implements ImageGetter {
 
         private final Drawable image;
@@ -69,6 +87,187 @@ public class HttpImageGetter implements ImageGetter {
         }
     }
 
+    /**
+     * Stream of the bytes of an ASCII string, such as Base64 content, that
+     * doesn't copy the string
+     */
+    private static class AsciiInputStream extends InputStream {
+
+        private final String value;
+
+        private int position;
+
+        private AsciiInputStream(final String value) {
+            this.value = value;
+        }
+
+        @Override
+        public int read() {
+            return position < value.length() ? value.charAt(position++) & 0x7f
+                    : -1;
+        }
+
+        @Override
+        public int read(final byte[] buffer, final int offset, final int count) {
+            if (count == 0)
+                return 0;
+            int remaining = value.length() - position;
+            if (remaining <= 0)
+                return -1;
+            int read = Math.min(count, remaining);
+            for (int i = 0; i < read; i++)
+                buffer[offset + i] = (byte) (value.charAt(position++) & 0x7f);
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return value.length() - position;
+        }
+    }
+
+    /**
+     * Cache of rendered HTML weighted by the size of its text and of the
+     * bitmaps of its images
+     */
+    public static class HtmlCache extends LruCache<Object, CharSequence> {
+
+        /**
+         * Create cache
+         *
+         * @param maxSize
+         *            maximum size in bytes
+         */
+        public HtmlCache(final int maxSize) {
+            super(maxSize);
+        }
+
+        @Override
+        protected int sizeOf(final Object key, final CharSequence value) {
+            int size = value.length() * 2;
+            if (value instanceof Spanned) {
+                Spanned spanned = (Spanned) value;
+                for (ImageSpan span : spanned.getSpans(0, spanned.length(),
+                        ImageSpan.class)) {
+                    Drawable drawable = span.getDrawable();
+                    if (drawable instanceof BitmapDrawable) {
+                        Bitmap bitmap = ((BitmapDrawable) drawable)
+                                .getBitmap();
+                        if (bitmap != null)
+                            size += bitmap.getByteCount();
+                    }
+                }
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Key of rendered HTML, the source is part of the key since ids of
+     * different kinds of resources may be equal
+     */
+    private static class HtmlKey {
+
+        private final Object id;
+
+        private final String html;
+
+        private HtmlKey(final Object id, final String html) {
+            this.id = id;
+            this.html = html;
+        }
+
+        @Override
+        public int hashCode() {
+            return id.hashCode() * 31 + html.hashCode();
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (o == this)
+                return true;
+            if (!(o instanceof HtmlKey))
+                return false;
+            HtmlKey other = (HtmlKey) o;
+            return id.equals(other.id) && html.equals(other.html);
+        }
+    }
+
+    /**
+     * Fraction of the application's memory class used for rendered HTML by
+     * all image getters together
+     */
+    private static final int MEMORY_CACHE_DIVIDER = 8;
+
+    /**
+     * Maximum size in bytes of the fetched images stored on disk
+     */
+    private static final long DISK_CACHE_SIZE = 20 * 1024 * 1024;
+
+    /**
+     * Size in bytes of rendered HTML with placeholder images
+     */
+    private static final int RAW_CACHE_SIZE = 512 * 1024;
+
+    private static final int IMAGE_THREADS = 4;
+
+    private static final ExecutorService IMAGE_EXECUTOR = Executors
+            .newFixedThreadPool(IMAGE_THREADS);
+
+    private static final Executor RENDER_EXECUTOR = Executors
+            .newFixedThreadPool(IMAGE_THREADS);
+
+    private static final Pattern IMAGE_SOURCE = Pattern.compile(
+            "<img\\s[^>]*src\\s*=\\s*[\"']([^\"']+)[\"']",
+            Pattern.CASE_INSENSITIVE);
+
+    private static final String SUFFIX_REF = ".ref";
+
+    private static final String SUFFIX_TIME = ".time";
+
+    /**
+     * Milliseconds an image stored by its URL is shown before requesting it
+     * again, since the URL may point to changing content such as a badge or
+     * a file on a branch
+     */
+    private static final long URL_IMAGE_TTL = 24 * 60 * 60 * 1000;
+
+    private static DiskCache imageCache;
+
+    private static synchronized DiskCache getImageCache(final Context context) {
+        if (imageCache == null)
+            imageCache = new DiskCache(new File(context.getCacheDir(),
+                    "images"), DISK_CACHE_SIZE);
+        return imageCache;
+    }
+
+    private static HtmlCache rawHtml;
+
+    private static HtmlCache fullHtml;
+
+    private static synchronized HtmlCache getRawHtmlCache() {
+        if (rawHtml == null)
+            rawHtml = new HtmlCache(RAW_CACHE_SIZE);
+        return rawHtml;
+    }
+
+    private static synchronized HtmlCache getFullHtmlCache(
+            final Context context) {
+        if (fullHtml == null) {
+            ActivityManager manager = (ActivityManager) context
+                    .getSystemService(ACTIVITY_SERVICE);
+            fullHtml = new HtmlCache(manager.getMemoryClass() * 1024 * 1024
+                    / MEMORY_CACHE_DIVIDER);
+        }
+        return fullHtml;
+    }
+
+    private static void remove(final HtmlCache cache, final Object id) {
+        for (Object key : cache.snapshot().keySet())
+            if (id.equals(((HtmlKey) key).id))
+                cache.remove(key);
+    }
+
     private static boolean containsImages(final String html) {
         return html.contains("<img");
     }
@@ -77,13 +276,13 @@ public class HttpImageGetter implements ImageGetter {
 
     private final Context context;
 
-    private final File dir;
-
     private final int width;
 
-    private final Map<Object, CharSequence> rawHtmlCache = new HashMap<Object, CharSequence>();
+    private final HtmlCache rawHtmlCache;
+
+    private final HtmlCache fullHtmlCache;
 
-    private final Map<Object, CharSequence> fullHtmlCache = new HashMap<Object, CharSequence>();
+    private final DiskCache images;
 
     private final ContentsService service;
 
@@ -97,9 +296,11 @@ public class HttpImageGetter implements ImageGetter {
     public HttpImageGetter(Context context, ContentsService service) {
         this.context = context;
         this.service = service;
-        dir = context.getCacheDir();
         width = ServiceUtils.getDisplayWidth(context);
         loading = new LoadingImageGetter(context, 24);
+        images = getImageCache(context);
+        rawHtmlCache = getRawHtmlCache();
+        fullHtmlCache = getFullHtmlCache(context);
     }
 
     private HttpImageGetter show(final TextView view, final CharSequence html) {
@@ -130,18 +331,17 @@ public class HttpImageGetter implements ImageGetter {
         if (TextUtils.isEmpty(html))
             return this;
 
+        HtmlKey key = new HtmlKey(id, html);
+        // Rendering with images of the same HTML is still valid
+        if (fullHtmlCache.get(key) != null)
+            return this;
+
         CharSequence encoded = HtmlUtils.encode(html, loading);
         // Use default encoding if no img tags
-        if (containsImages(html)) {
-            CharSequence currentEncoded = rawHtmlCache.put(id, encoded);
-            // Remove full html if raw html has changed
-            if (currentEncoded == null
-                    || !currentEncoded.toString().equals(encoded.toString()))
-                fullHtmlCache.remove(id);
-        } else {
-            rawHtmlCache.remove(id);
-            fullHtmlCache.put(id, encoded);
-        }
+        if (containsImages(html))
+            rawHtmlCache.put(key, encoded);
+        else
+            fullHtmlCache.put(key, encoded);
         return this;
     }
 
@@ -158,18 +358,18 @@ public class HttpImageGetter implements ImageGetter {
         if (TextUtils.isEmpty(html))
             return hide(view);
 
-        CharSequence encoded = fullHtmlCache.get(id);
+        final HtmlKey key = new HtmlKey(id, html);
+        CharSequence encoded = fullHtmlCache.get(key);
         if (encoded != null)
             return show(view, encoded);
 
-        encoded = rawHtmlCache.get(id);
+        encoded = rawHtmlCache.get(key);
         if (encoded == null) {
             encoded = HtmlUtils.encode(html, loading);
             if (containsImages(html))
-                rawHtmlCache.put(id, encoded);
+                rawHtmlCache.put(key, encoded);
             else {
-                rawHtmlCache.remove(id);
-                fullHtmlCache.put(id, encoded);
+                fullHtmlCache.put(key, encoded);
                 return show(view, encoded);
             }
         }
@@ -179,16 +379,17 @@ public class HttpImageGetter implements ImageGetter {
 
         show(view, encoded);
         view.setTag(id);
-        new AuthenticatedUserTask<CharSequence>(context) {
+        new AuthenticatedUserTask<CharSequence>(context, RENDER_EXECUTOR) {
 
             @Override
             protected CharSequence run(Account account) throws Exception {
-                return HtmlUtils.encode(html, HttpImageGetter.this);
+                return HtmlUtils.encode(html, fetchImages(html));
             }
 
             @Override
             protected void onSuccess(final CharSequence html) throws Exception {
-                fullHtmlCache.put(id, html);
+                rawHtmlCache.remove(key);
+                fullHtmlCache.put(key, html);
 
                 if (id.equals(view.getTag()))
                     show(view, html);
@@ -249,21 +450,124 @@ public class HttpImageGetter implements ImageGetter {
         List<RepositoryContents> contents = service.getContents(
                 RepositoryId.create(owner, name), path.toString(), branch);
         if (contents != null && contents.size() == 1) {
-            byte[] content = Base64.decode(contents.get(0).getContent(),
-                    DEFAULT);
-            Bitmap bitmap = ImageUtils.getBitmap(content, width, MAX_VALUE);
-            if (bitmap == null)
-                return loading.getDrawable(source);
-            BitmapDrawable drawable = new BitmapDrawable(
-                    context.getResources(), bitmap);
-            drawable.setBounds(0, 0, bitmap.getWidth(), bitmap.getHeight());
-            return drawable;
+            RepositoryContents blob = contents.get(0);
+            // Store the image by its blob SHA so the same image referenced
+            // from different URLs is only kept once
+            String sha = blob.getSha();
+            File image = images.get(sha);
+            if (image == null)
+                image = images.put(sha, new Base64InputStream(
+                        new AsciiInputStream(blob.getContent()), DEFAULT));
+            String key = DiskCache.getKey(source);
+            images.put(key + SUFFIX_REF, sha);
+            setStoredTime(key);
+            return decode(image, source);
         } else
             return null;
     }
 
+    /**
+     * Get image previously stored for given source
+     * <p>
+     * Images stored by their blob SHA-1 never change but the source URL is
+     * only mapped to them for {@link #URL_IMAGE_TTL}
+     *
+     * @param source
+     * @return image file or null if not stored or stale
+     */
+    private File getStoredImage(final String source) {
+        String key = DiskCache.getKey(source);
+        try {
+            String time = images.getString(key + SUFFIX_TIME);
+            if (time == null
+                    || System.currentTimeMillis() - Long.parseLong(time) > URL_IMAGE_TTL)
+                return null;
+
+            File image = images.get(key);
+            if (image != null)
+                return image;
+
+            String sha = images.getString(key + SUFFIX_REF);
+            return sha != null ? images.get(sha) : null;
+        } catch (IOException e) {
+            return null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void setStoredTime(final String key) {
+        try {
+            images.put(key + SUFFIX_TIME,
+                    Long.toString(System.currentTimeMillis()));
+        } catch (IOException e) {
+            Log.d(TAG, "Exception storing image time", e);
+        }
+    }
+
+    private Drawable decode(final File image, final String source) {
+        Bitmap bitmap = ImageUtils.getBitmap(image, width, MAX_VALUE);
+        if (bitmap == null)
+            return loading.getDrawable(source);
+
+        BitmapDrawable drawable = new BitmapDrawable(context.getResources(),
+                bitmap);
+        drawable.setBounds(0, 0, bitmap.getWidth(), bitmap.getHeight());
+        return drawable;
+    }
+
+    /**
+     * Fetch all images referenced by given HTML concurrently
+     *
+     * @param html
+     * @return image getter returning the fetched images
+     */
+    private ImageGetter fetchImages(final String html) {
+        final Map<String, Future<Drawable>> fetches = new HashMap<String, Future<Drawable>>();
+        Matcher matcher = IMAGE_SOURCE.matcher(html);
+        while (matcher.find()) {
+            final String source = matcher.group(1).replace("&amp;", "&");
+            if (fetches.containsKey(source))
+                continue;
+            fetches.put(source,
+                    IMAGE_EXECUTOR.submit(new Callable<Drawable>() {
+
+                        @Override
+                        public Drawable call() throws Exception {
+                            return getDrawable(source);
+                        }
+                    }));
+        }
+
+        final Map<String, Drawable> fetched = new HashMap<String, Drawable>(
+                fetches.size());
+        for (Entry<String, Future<Drawable>> fetch : fetches.entrySet())
+            try {
+                fetched.put(fetch.getKey(), fetch.getValue().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                fetched.put(fetch.getKey(), loading.getDrawable(fetch.getKey()));
+            }
+
+        return new ImageGetter() {
+
+            @Override
+            public Drawable getDrawable(String source) {
+                Drawable image = fetched.get(source);
+                return image != null ? image : HttpImageGetter.this
+                        .getDrawable(source);
+            }
+        };
+    }
+
     @Override
     public Drawable getDrawable(final String source) {
+        File stored = getStoredImage(source);
+        if (stored != null)
+            return decode(stored, source);
+
         try {
             Drawable repositoryImage = requestRepositoryImage(source);
             if (repositoryImage != null)
@@ -272,29 +576,24 @@ public class HttpImageGetter implements ImageGetter {
             // Ignore and attempt request over regular HTTP request
         }
 
-        File output = null;
         try {
-            output = File.createTempFile("image", ".jpg", dir);
             HttpRequest request = HttpRequest.get(source);
             if (!request.ok())
                 throw new IOException("Unexpected response code: "
                         + request.code());
-            request.receive(output);
-            Bitmap bitmap = ImageUtils.getBitmap(output, width, MAX_VALUE);
-            if (bitmap == null)
-                return loading.getDrawable(source);
-
-            BitmapDrawable drawable = new BitmapDrawable(
-                    context.getResources(), bitmap);
-            drawable.setBounds(0, 0, bitmap.getWidth(), bitmap.getHeight());
-            return drawable;
+            InputStream input = request.buffer();
+            try {
+                String key = DiskCache.getKey(source);
+                File image = images.put(key, input);
+                setStoredTime(key);
+                return decode(image, source);
+            } finally {
+                input.close();
+            }
         } catch (IOException e) {
             return loading.getDrawable(source);
         } catch (HttpRequestException e) {
             return loading.getDrawable(source);
-        } finally {
-            if (output != null)
-                output.delete();
         }
     }
 
@@ -303,7 +602,7 @@ public class HttpImageGetter implements ImageGetter {
      * @param id
      */
     public void removeFromCache(final Object id) {
-        rawHtmlCache.remove(id);
-        fullHtmlCache.remove(id);
+        remove(rawHtmlCache, id);
+        remove(fullHtmlCache, id);
     }
 }
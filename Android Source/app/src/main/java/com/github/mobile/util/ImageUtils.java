@@ -16,21 +16,25 @@
 package com.github.mobile.util;
 
 import static android.graphics.Bitmap.Config.ARGB_8888;
+import static android.graphics.Bitmap.Config.RGB_565;
 import static android.graphics.Color.WHITE;
 import static android.graphics.PorterDuff.Mode.DST_IN;
 import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
 import android.graphics.BitmapFactory;
 import android.graphics.BitmapFactory.Options;
 import android.graphics.Canvas;
 import android.graphics.Paint;
-import android.graphics.Point;
 import android.graphics.PorterDuffXfermode;
 import android.graphics.RectF;
 import android.util.Log;
 import android.widget.ImageView;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.RandomAccessFile;
 
 /**
@@ -40,27 +44,23 @@ public class ImageUtils {
 
     private static final String TAG = "ImageUtils";
 
+    private static final int BUFFER_SIZE = 16 * 1024;
+
     /**
-     * Get a bitmap from the image path
-     *
-     * @param imagePath
-     * @return bitmap or null if read fails
+     * Maximum number of bytes the bounds of an image may span in a stream
+     * before it can no longer be rewound to decode the pixels
      */
-    public static Bitmap getBitmap(final String imagePath) {
-        return getBitmap(imagePath, 1);
-    }
+    private static final int BOUNDS_MARK_LIMIT = 256 * 1024;
 
     /**
      * Get a bitmap from the image path
      *
      * @param imagePath
-     * @param sampleSize
      * @return bitmap or null if read fails
      */
-    public static Bitmap getBitmap(final String imagePath, int sampleSize) {
+    public static Bitmap getBitmap(final String imagePath) {
         final Options options = new Options();
         options.inDither = false;
-        options.inSampleSize = sampleSize;
 
         RandomAccessFile file = null;
         try {
@@ -81,100 +81,130 @@ public class ImageUtils {
     }
 
     /**
-     * Get a bitmap from the image
-     *
-     * @param image
-     * @param sampleSize
-     * @return bitmap or null if read fails
-     */
-    public static Bitmap getBitmap(final byte[] image, int sampleSize) {
-        final Options options = new Options();
-        options.inDither = false;
-        options.inSampleSize = sampleSize;
-        return BitmapFactory.decodeByteArray(image, 0, image.length, options);
-    }
-
-    /**
-     * Get scale for image of size and max height/width
+     * Get bitmap with maximum height or width
      *
-     * @param size
+     * @param imagePath
      * @param width
      * @param height
-     * @return scale
+     * @return image
      */
-    public static int getScale(Point size, int width, int height) {
-        if (size.x > width || size.y > height)
-            return Math.max(Math.round((float) size.y / (float) height),
-                    Math.round((float) size.x / (float) width));
-        else
-            return 1;
+    public static Bitmap getBitmap(final String imagePath, int width, int height) {
+        try {
+            return getBitmap(imagePath, width, height, true);
+        } catch (IllegalArgumentException e) {
+            // Decode the file again into a newly allocated bitmap
+            Log.d(TAG, "Exception decoding into pooled bitmap", e);
+            return getBitmap(imagePath, width, height, false);
+        }
     }
 
-    /**
-     * Get size of image
-     *
-     * @param imagePath
-     * @return size
-     */
-    public static Point getSize(final String imagePath) {
-        final Options options = new Options();
-        options.inJustDecodeBounds = true;
-
-        RandomAccessFile file = null;
+    private static Bitmap getBitmap(final String imagePath, int width,
+            int height, boolean pooled) {
+        InputStream input = null;
         try {
-            file = new RandomAccessFile(imagePath, "r");
-            BitmapFactory.decodeFileDescriptor(file.getFD(), null, options);
-            return new Point(options.outWidth, options.outHeight);
+            input = new FileInputStream(imagePath);
+            return getBitmap(input, width, height, pooled);
         } catch (IOException e) {
             Log.d(TAG, e.getMessage(), e);
             return null;
         } finally {
-            if (file != null)
+            if (input != null)
                 try {
-                    file.close();
+                    input.close();
                 } catch (IOException e) {
                     Log.d(TAG, e.getMessage(), e);
                 }
         }
     }
 
-    /**
-     * Get size of image
-     *
-     * @param image
-     * @return size
-     */
-    public static Point getSize(final byte[] image) {
-        final Options options = new Options();
-        options.inJustDecodeBounds = true;
-        BitmapFactory.decodeByteArray(image, 0, image.length, options);
-        return new Point(options.outWidth, options.outHeight);
-    }
-
     /**
      * Get bitmap with maximum height or width
+     * <p>
+     * The stream is read only once: the bounds are decoded from a marked
+     * buffer that is then rewound to decode the pixels. Images are downsampled
+     * to fit the given size while decoding, opaque JPEG images are decoded to
+     * {@link Config#RGB_565} and pooled bitmaps are reused when possible.
      *
-     * @param imagePath
+     * @param stream
      * @param width
      * @param height
-     * @return image
+     * @return image or null if the stream is not a decodable image
+     * @throws IOException
      */
-    public static Bitmap getBitmap(final String imagePath, int width, int height) {
-        Point size = getSize(imagePath);
-        return getBitmap(imagePath, getScale(size, width, height));
+    public static Bitmap getBitmap(final InputStream stream, int width,
+            int height) throws IOException {
+        try {
+            return getBitmap(stream, width, height, true);
+        } catch (IllegalArgumentException e) {
+            // The stream has been consumed and can't be decoded again
+            Log.d(TAG, "Exception decoding into pooled bitmap", e);
+            return null;
+        }
     }
 
-    /**
-     * Get bitmap with maximum height or width
-     *
-     * @param image
-     * @param width
-     * @param height
-     * @return image
-     */
-    public static Bitmap getBitmap(final byte[] image, int width, int height) {
-        Point size = getSize(image);
-        return getBitmap(image, getScale(size, width, height));
+    private static Bitmap getBitmap(final InputStream stream, int width,
+            int height, boolean pooled) throws IOException {
+        final BufferedInputStream input = new BufferedInputStream(stream,
+                BUFFER_SIZE);
+        input.mark(BOUNDS_MARK_LIMIT);
+
+        final Options options = new Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeStream(input, null, options);
+        input.reset();
+        if (options.outWidth <= 0 || options.outHeight <= 0)
+            return null;
+
+        final int imageWidth = options.outWidth;
+        final int imageHeight = options.outHeight;
+        options.inJustDecodeBounds = false;
+        options.inDither = false;
+        options.inPreferredConfig = "image/jpeg".equals(options.outMimeType) ? RGB_565
+                : ARGB_8888;
+
+        // Sample by the largest power of two that doesn't undershoot the
+        // requested size and let the decoder scale the remainder
+        final float ratio = Math.max((float) imageWidth / width,
+                (float) imageHeight / height);
+        int sampleSize = 1;
+        while (sampleSize * 2 <= ratio)
+            sampleSize *= 2;
+        options.inSampleSize = sampleSize;
+        if (ratio > sampleSize) {
+            boolean widthBound = (float) imageWidth / width >= (float) imageHeight
+                    / height;
+            options.inScaled = true;
+            options.inDensity = (widthBound ? imageWidth : imageHeight)
+                    / sampleSize;
+            options.inTargetDensity = widthBound ? width : height;
+        }
+
+        options.inMutable = true;
+        if (!pooled)
+            return decode(input, options);
+
+        // The pool only returns mutable bitmaps with at least the bytes of
+        // the sampled image, which bounds the scaled image, and only on
+        // versions that reuse bitmaps across dimensions and configs
+        final int sampledWidth = (imageWidth + sampleSize - 1) / sampleSize;
+        final int sampledHeight = (imageHeight + sampleSize - 1) / sampleSize;
+        options.inBitmap = BitmapPool.get(sampledWidth * sampledHeight
+                * BitmapPool.getBytesPerPixel(options.inPreferredConfig));
+        try {
+            return decode(input, options);
+        } catch (IllegalArgumentException e) {
+            BitmapPool.put(options.inBitmap);
+            throw e;
+        }
+    }
+
+    private static Bitmap decode(final InputStream input, final Options options) {
+        Bitmap bitmap = BitmapFactory.decodeStream(input, null, options);
+        // Scaling through the densities marks the bitmap with the target
+        // density which must not be applied again when it is drawn
+        if (bitmap != null && options.inDensity != 0)
+            bitmap.setDensity(Bitmap.DENSITY_NONE);
+        return bitmap;
     }
 
     /**
@@ -238,19 +268,19 @@ public class ImageUtils {
         paint.setAntiAlias(true);
         paint.setColor(WHITE);
 
-        Bitmap clipped = Bitmap.createBitmap(width, height, ARGB_8888);
+        Bitmap clipped = BitmapPool.create(width, height, ARGB_8888);
         Canvas canvas = new Canvas(clipped);
         canvas.drawRoundRect(new RectF(0, 0, width, height), radius, radius,
                 paint);
         paint.setXfermode(new PorterDuffXfermode(DST_IN));
 
-        Bitmap rounded = Bitmap.createBitmap(width, height, ARGB_8888);
+        Bitmap rounded = BitmapPool.create(width, height, ARGB_8888);
         canvas = new Canvas(rounded);
         canvas.drawBitmap(source, 0, 0, null);
         canvas.drawBitmap(clipped, 0, 0, paint);
 
-        source.recycle();
-        clipped.recycle();
+        BitmapPool.put(source);
+        BitmapPool.put(clipped);
 
         return rounded;
     }
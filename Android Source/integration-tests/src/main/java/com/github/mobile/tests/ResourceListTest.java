@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile.tests;
+
+import android.test.AndroidTestCase;
+
+import com.github.mobile.core.ResourceList;
+
+import java.util.List;
+
+/**
+ * Unit tests of {@link ResourceList}
+ */
+public class ResourceListTest extends AndroidTestCase {
+
+    /**
+     * Verify resources with the same numeric id are replaced in place
+     */
+    public void testReplaceNumericId() {
+        ResourceList<String> list = new ResourceList<String>();
+        assertTrue(list.put(1L, "a"));
+        assertTrue(list.put(2L, "b"));
+        assertFalse(list.put(1L, "c"));
+        assertEquals(2, list.size());
+        assertEquals("c", list.get(0));
+        assertEquals("b", list.get(1));
+    }
+
+    /**
+     * Verify resources with the same object id are replaced in place
+     */
+    public void testReplaceObjectId() {
+        ResourceList<String> list = new ResourceList<String>();
+        assertTrue(list.put("x", "a"));
+        assertTrue(list.put(5L, "b"));
+        assertFalse(list.put("x", "c"));
+        assertEquals(2, list.size());
+        assertEquals("c", list.get(0));
+        assertEquals("b", list.get(1));
+    }
+
+    /**
+     * Verify order and ids are kept as the list grows
+     */
+    public void testGrow() {
+        ResourceList<Long> list = new ResourceList<Long>();
+        for (long id = 0; id < 5000; id++)
+            assertTrue(list.put(id * 31, id));
+        for (long id = 0; id < 5000; id++)
+            assertFalse(list.put(id * 31, id));
+        assertEquals(5000, list.size());
+        for (int i = 0; i < 5000; i++)
+            assertEquals(i, list.get(i).longValue());
+        assertEquals(5000, list.toArray().length);
+
+        list.clear();
+        assertTrue(list.isEmpty());
+        assertTrue(list.put(31L, 1L));
+    }
+
+    /**
+     * Verify snapshots are unaffected by later changes to the list
+     */
+    public void testSnapshot() {
+        ResourceList<String> list = new ResourceList<String>();
+        list.put(1L, "a");
+        List<String> snapshot = list.snapshot();
+        list.put(2L, "b");
+        list.put(1L, "c");
+        assertEquals(1, snapshot.size());
+        assertEquals("a", snapshot.get(0));
+
+        list.clear();
+        assertEquals(1, snapshot.size());
+        try {
+            snapshot.add("d");
+            fail("Exception not thrown");
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+    }
+}
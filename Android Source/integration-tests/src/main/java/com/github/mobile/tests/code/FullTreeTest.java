@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile.tests.code;
+
+import static org.eclipse.egit.github.core.TreeEntry.TYPE_BLOB;
+import static org.eclipse.egit.github.core.TreeEntry.TYPE_TREE;
+import android.test.AndroidTestCase;
+
+import com.github.mobile.core.code.FullTree;
+import com.github.mobile.core.code.FullTree.Folder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.egit.github.core.Reference;
+import org.eclipse.egit.github.core.Tree;
+import org.eclipse.egit.github.core.TreeEntry;
+
+/**
+ * Tests of {@link FullTree}
+ */
+public class FullTreeTest extends AndroidTestCase {
+
+    private static TreeEntry entry(String path, String type) {
+        TreeEntry entry = new TreeEntry();
+        entry.setPath(path);
+        entry.setType(type);
+        return entry;
+    }
+
+    private static FullTree create(TreeEntry... entries) {
+        List<TreeEntry> list = new ArrayList<TreeEntry>();
+        for (TreeEntry entry : entries)
+            list.add(entry);
+        Tree tree = new Tree();
+        tree.setTree(list);
+        return new FullTree(tree, new Reference().setRef("refs/heads/master"));
+    }
+
+    /**
+     * Verify folders and files are sorted case-insensitively
+     */
+    public void testSorted() {
+        FullTree tree = create(entry("b.txt", TYPE_BLOB),
+                entry("A.txt", TYPE_BLOB), entry("src", TYPE_TREE),
+                entry("lib", TYPE_TREE));
+        Folder root = tree.root;
+        assertEquals(2, root.getFolderCount());
+        assertEquals(2, root.getFileCount());
+        assertEquals("lib", root.getFolders().get(0).name);
+        assertEquals("src", root.getFolders().get(1).name);
+        assertEquals("A.txt", root.getFiles().get(0).name);
+        assertEquals("b.txt", root.getFiles().get(1).name);
+    }
+
+    /**
+     * Verify entries that arrive before their parent folders are kept
+     */
+    public void testParentsOutOfOrder() {
+        TreeEntry src = entry("src", TYPE_TREE);
+        FullTree tree = create(entry("src/main/a.java", TYPE_BLOB),
+                entry("src/main", TYPE_TREE), src);
+        Folder folder = tree.root.getFolder("src");
+        assertNotNull(folder);
+        assertSame(src, folder.entry);
+        assertSame(tree.root, folder.parent);
+
+        Folder main = folder.getFolder("main");
+        assertNotNull(main);
+        assertEquals("src/main", main.entry.getPath());
+        assertEquals(1, main.getFileCount());
+        assertEquals("a.java", main.getFiles().get(0).name);
+        assertSame(main, main.getFiles().get(0).parent);
+    }
+
+    /**
+     * Verify missing parent folders are created from the paths of their
+     * children
+     */
+    public void testMissingParent() {
+        FullTree tree = create(entry("docs/guide/index.md", TYPE_BLOB));
+        Folder guide = tree.root.getFolder("docs").getFolder("guide");
+        assertNotNull(guide);
+        assertEquals("docs/guide", guide.entry.getPath());
+        assertEquals("index.md", guide.getFiles().get(0).name);
+    }
+}
@@ -139,4 +139,22 @@ public class DiffStylerTest extends AndroidTestCase {
     public void testFormattedPatch() throws IOException {
         compareStyled("@@ 1,2 1,2 @@\n+navigation_drawer_header_background\n");
     }
+
+    /**
+     * Test lines are views of the patch
+     */
+    public void testLineViews() {
+        DiffStyler styler = new DiffStyler(getContext().getResources());
+        CommitFile file = new CommitFile();
+        file.setFilename("file.txt");
+        file.setPatch("@@ 1,2 1,2 @@\n+added\n-removed");
+        styler.setFiles(Collections.singletonList(file));
+        List<CharSequence> lines = styler.get("file.txt");
+        assertEquals(3, lines.size());
+        CharSequence added = lines.get(1);
+        assertEquals(6, added.length());
+        assertEquals('+', added.charAt(0));
+        assertEquals("add", added.subSequence(1, 4).toString());
+        assertEquals("-removed", lines.get(2).toString());
+    }
 }
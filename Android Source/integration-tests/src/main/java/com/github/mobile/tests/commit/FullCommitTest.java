@@ -22,6 +22,7 @@ import com.github.mobile.core.commit.FullCommit;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 
 import org.eclipse.egit.github.core.CommitComment;
 import org.eclipse.egit.github.core.CommitFile;
@@ -111,4 +112,50 @@ public class FullCommitTest extends AndroidTestCase {
         assertEquals(1, full.getFiles().size());
         assertEquals(comment1, full.getFiles().get(0).get(10).get(0));
     }
+
+    /**
+     * Test the comments given to the constructor are not modified
+     */
+    public void testCommentsNotModified() {
+        RepositoryCommit commit = new RepositoryCommit();
+        CommitFile file = new CommitFile();
+        file.setFilename("a.txt");
+        commit.setFiles(Collections.singletonList(file));
+        CommitComment comment = new CommitComment();
+        comment.setPath(file.getFilename());
+        comment.setPosition(3);
+        List<CommitComment> comments = new ArrayList<CommitComment>(
+                Collections.singletonList(comment));
+        new FullCommit(commit, comments);
+        assertEquals(1, comments.size());
+    }
+
+    /**
+     * Test comments added a page at a time are attached to their files
+     */
+    public void testAddCommentPages() {
+        RepositoryCommit commit = new RepositoryCommit();
+        CommitFile file1 = new CommitFile();
+        file1.setFilename("a.txt");
+        CommitFile file2 = new CommitFile();
+        file2.setFilename("b.txt");
+        commit.setFiles(Arrays.asList(file1, file2));
+        CommitComment comment1 = new CommitComment();
+        comment1.setPath(file2.getFilename());
+        comment1.setPosition(1);
+        CommitComment comment2 = new CommitComment();
+        comment2.setPath("c.txt");
+        comment2.setPosition(2);
+        CommitComment comment3 = new CommitComment();
+        comment3.setPath(file1.getFilename());
+        comment3.setPosition(5);
+
+        FullCommit full = new FullCommit(commit);
+        full.addComments(Arrays.asList(comment1, comment2));
+        full.addComments(Collections.singletonList(comment3));
+        assertEquals(1, full.size());
+        assertEquals(comment2, full.get(0));
+        assertEquals(comment3, full.getFiles().get(0).get(5).get(0));
+        assertEquals(comment1, full.getFiles().get(1).get(1).get(0));
+    }
 }
@@ -18,6 +18,9 @@ package com.github.mobile.tests.gist;
 import android.test.AndroidTestCase;
 
 import com.github.mobile.core.gist.GistStore;
+import com.github.mobile.persistence.ItemCache;
+
+import java.io.File;
 
 import org.eclipse.egit.github.core.Gist;
 import org.eclipse.egit.github.core.service.GistService;
@@ -45,4 +48,53 @@ public class GistStoreTest extends AndroidTestCase {
         assertEquals(gist2.getDescription(), gist.getDescription());
         assertSame(gist, store.getGist("abcd"));
     }
+
+    private static void addGist(GistStore store, String id) {
+        Gist gist = new Gist();
+        gist.setId(id).setDescription("description " + id);
+        store.addGist(gist);
+    }
+
+    /**
+     * Verify recently viewed gists are still in the store after garbage
+     * collections when navigating back and forth between them
+     */
+    public void testRecentGistsSurviveGc() {
+        GistStore store = new GistStore(new GistService());
+        String[] ids = new String[] { "a", "b", "c", "d", "e" };
+        for (String id : ids)
+            addGist(store, id);
+
+        int refreshes = 0;
+        for (int i = 0; i < 10; i++) {
+            System.gc();
+            System.runFinalization();
+            String id = ids[i % 2 == 0 ? i % ids.length : 0];
+            if (store.getGist(id) == null) {
+                refreshes++;
+                addGist(store, id);
+            }
+        }
+        assertEquals(0, refreshes);
+    }
+
+    /**
+     * Verify gist is read from the cache of a new store when not in memory
+     */
+    public void testGistReadFromCache() {
+        File dir = new File(getContext().getCacheDir(), "test-items");
+        ItemCache cache = new ItemCache(dir, 1024 * 1024);
+        Gist gist = new Gist();
+        gist.setId("abcd").setDescription("description");
+        cache.put(Gist.class, "abcd", gist);
+
+        GistStore store = new GistStore(new GistService(), new ItemCache(dir,
+                1024 * 1024));
+        assertNull(store.getGist("abcd"));
+        Gist stored = store.loadGist("abcd");
+        assertNotNull(stored);
+        assertEquals("description", stored.getDescription());
+        assertSame(stored, store.getGist("abcd"));
+        assertNull(store.loadGist("efgh"));
+    }
 }
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile.tests.issue;
+
+import android.test.AndroidTestCase;
+
+import com.github.mobile.core.issue.IssueHandoff;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.egit.github.core.Issue;
+import org.eclipse.egit.github.core.PullRequest;
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.RepositoryIssue;
+import org.eclipse.egit.github.core.User;
+
+/**
+ * Unit tests of {@link IssueHandoff}
+ */
+public class IssueHandoffTest extends AndroidTestCase {
+
+    /**
+     * Verify registered issues are available through the returned handle
+     */
+    public void testHandoff() {
+        Repository repo = new Repository();
+        repo.setName("name");
+        repo.setOwner(new User().setLogin("owner"));
+
+        List<Issue> issues = new ArrayList<Issue>();
+        issues.add(new RepositoryIssue().setRepository(repo).setNumber(1));
+        issues.add(new Issue().setNumber(2)
+                .setHtmlUrl("https://github.com/a/b/pull/2")
+                .setPullRequest(new PullRequest().setHtmlUrl(
+                        "https://github.com/a/b/pull/2")));
+
+        IssueHandoff handoff = IssueHandoff.get(IssueHandoff.put(issues));
+        assertNotNull(handoff);
+        assertEquals(2, handoff.size());
+        assertEquals(1, handoff.getNumbers()[0]);
+        assertEquals(2, handoff.getNumbers()[1]);
+        assertFalse(handoff.getPullRequests()[0]);
+        assertTrue(handoff.getPullRequests()[1]);
+        assertEquals("owner/name", handoff.getRepositoryIds().get(0)
+                .generateId());
+        assertEquals("a/b", handoff.getRepositoryIds().get(1).generateId());
+    }
+
+    /**
+     * Verify unknown handles are not found
+     */
+    public void testUnknownHandle() {
+        assertNull(IssueHandoff.get(-1));
+    }
+}
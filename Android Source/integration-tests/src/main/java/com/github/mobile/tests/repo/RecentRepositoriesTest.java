@@ -20,6 +20,14 @@ import android.test.AndroidTestCase;
 
 import com.github.mobile.ui.repo.RecentRepositories;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.LinkedHashSet;
+import java.util.zip.GZIPOutputStream;
+
 import org.eclipse.egit.github.core.User;
 
 /**
@@ -92,4 +100,43 @@ public class RecentRepositoriesTest extends AndroidTestCase {
         recent1 = new RecentRepositories(getContext(), org1);
         assertFalse(recent1.contains(id2));
     }
+
+    /**
+     * Verify state written with Java serialization by previous versions is
+     * read and migrated
+     *
+     * @throws IOException
+     */
+    public void testLegacyFormat() throws IOException {
+        User org = new User().setId(60);
+        File legacy = new File(getContext().getFilesDir(),
+                "recent-repos-60.ser");
+        File file = new File(getContext().getFilesDir(), "recent-repos-60.json");
+        file.delete();
+        LinkedHashSet<Long> ids = new LinkedHashSet<Long>();
+        ids.add(3456L);
+        ObjectOutputStream output = new ObjectOutputStream(
+                new GZIPOutputStream(new FileOutputStream(legacy)));
+        try {
+            output.writeInt(2);
+            output.writeObject(ids);
+        } finally {
+            output.close();
+        }
+
+        RecentRepositories recent = new RecentRepositories(getContext(), org);
+        assertTrue(recent.contains(3456));
+        assertFalse(legacy.exists());
+        assertTrue(file.exists());
+
+        FileInputStream input = new FileInputStream(file);
+        try {
+            assertTrue(input.read() != 0x1f);
+        } finally {
+            input.close();
+        }
+        recent = new RecentRepositories(getContext(), org);
+        assertTrue(recent.contains(3456));
+        file.delete();
+    }
 }
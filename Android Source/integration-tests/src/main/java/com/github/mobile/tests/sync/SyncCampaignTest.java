@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015 GitHub Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.mobile.tests.sync;
+
+import android.content.SyncResult;
+import android.test.AndroidTestCase;
+
+import com.github.mobile.persistence.DatabaseCache;
+import com.github.mobile.persistence.OrganizationRepositories;
+import com.github.mobile.persistence.Organizations;
+import com.github.mobile.persistence.PersistableResource;
+import com.github.mobile.sync.SyncCampaign;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.inject.Provides;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.egit.github.core.Repository;
+import org.eclipse.egit.github.core.User;
+
+/**
+ * Tests of {@link SyncCampaign} against stubbed resources with simulated
+ * request latency
+ */
+public class SyncCampaignTest extends AndroidTestCase {
+
+    private static final int ORGS = 8;
+
+    private static final long LATENCY = 200;
+
+    private Injector injector;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        final List<User> orgs = new ArrayList<User>();
+        for (int i = 0; i < ORGS; i++)
+            orgs.add(new User().setId(i).setLogin("org" + i));
+
+        injector = Guice.createInjector(new AbstractModule() {
+
+            @Override
+            protected void configure() {
+            }
+
+            @Provides
+            DatabaseCache cache() {
+                return new DatabaseCache() {
+
+                    @Override
+                    public <E> List<E> requestAndStore(
+                            PersistableResource<E> resource)
+                            throws IOException {
+                        return resource.request();
+                    }
+
+                    @Override
+                    public <E> List<E> store(PersistableResource<E> resource,
+                            List<E> items) {
+                        return items;
+                    }
+                };
+            }
+
+            @Provides
+            Organizations organizations() {
+                return new Organizations(null, null) {
+
+                    @Override
+                    public List<User> request() throws IOException {
+                        return orgs;
+                    }
+                };
+            }
+
+            @Provides
+            OrganizationRepositories.Factory repositories() {
+                return new OrganizationRepositories.Factory() {
+
+                    @Override
+                    public OrganizationRepositories under(User org) {
+                        return new OrganizationRepositories(org, null, null,
+                                null) {
+
+                            @Override
+                            public List<Repository> request()
+                                    throws IOException {
+                                try {
+                                    Thread.sleep(LATENCY);
+                                } catch (InterruptedException e) {
+                                    throw new InterruptedIOException();
+                                }
+                                return Collections.emptyList();
+                            }
+                        };
+                    }
+                };
+            }
+        });
+    }
+
+    private SyncCampaign createCampaign(SyncResult result) {
+        SyncCampaign campaign = new SyncCampaign(result);
+        injector.injectMembers(campaign);
+        return campaign;
+    }
+
+    /**
+     * Verify concurrent campaign syncs every organization faster than a serial
+     * one
+     */
+    public void testParallelFasterThanSerial() {
+        SyncResult serialResult = new SyncResult();
+        SyncCampaign serial = createCampaign(serialResult).setParallelism(1);
+        long start = System.currentTimeMillis();
+        serial.run();
+        long serialTime = System.currentTimeMillis() - start;
+
+        SyncResult parallelResult = new SyncResult();
+        SyncCampaign parallel = createCampaign(parallelResult).setParallelism(
+                ORGS);
+        start = System.currentTimeMillis();
+        parallel.run();
+        long parallelTime = System.currentTimeMillis() - start;
+
+        assertEquals(ORGS + 1, serialResult.stats.numUpdates);
+        assertEquals(ORGS + 1, parallelResult.stats.numUpdates);
+        assertEquals(ORGS, parallel.getTimings().size());
+        assertTrue(serialTime >= ORGS * LATENCY);
+        assertTrue(parallelTime < serialTime / 2);
+    }
+
+    /**
+     * Verify cancelling campaign stops it before all organizations are synced
+     *
+     * @throws Exception
+     */
+    public void testCancel() throws Exception {
+        SyncResult result = new SyncResult();
+        final SyncCampaign campaign = createCampaign(result).setParallelism(1);
+        Thread thread = new Thread(campaign);
+        thread.start();
+        Thread.sleep(LATENCY + LATENCY / 2);
+        campaign.cancel();
+        thread.join(LATENCY * 2);
+        assertFalse(thread.isAlive());
+        assertEquals(0, result.stats.numIoExceptions);
+        assertTrue(campaign.getTimings().size() < ORGS);
+    }
+}
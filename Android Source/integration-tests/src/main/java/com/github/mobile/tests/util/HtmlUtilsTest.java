@@ -15,9 +15,14 @@
  */
 package com.github.mobile.tests.util;
 
-import static android.os.Build.VERSION.SDK_INT;
-import static android.os.Build.VERSION_CODES.ICE_CREAM_SANDWICH;
+import static android.graphics.Typeface.BOLD;
+import static android.graphics.Typeface.ITALIC;
 import android.test.AndroidTestCase;
+import android.text.Spanned;
+import android.text.style.LeadingMarginSpan;
+import android.text.style.StrikethroughSpan;
+import android.text.style.StyleSpan;
+import android.text.style.TypefaceSpan;
 
 import com.github.mobile.util.HtmlUtils;
 
@@ -26,11 +31,14 @@ import com.github.mobile.util.HtmlUtils;
  */
 public class HtmlUtilsTest extends AndroidTestCase {
 
-    private String format(String html) {
-        CharSequence formatted = HtmlUtils.format(html);
-        assertNotNull(formatted);
-        return formatted.toString().replace("<githubroot>", "")
-                .replace("</githubroot>", "");
+    private String encode(String html) {
+        CharSequence encoded = HtmlUtils.encode(html);
+        assertNotNull(encoded);
+        return encoded.toString();
+    }
+
+    private <T> int count(CharSequence encoded, Class<T> type) {
+        return ((Spanned) encoded).getSpans(0, encoded.length(), type).length;
     }
 
     /**
@@ -38,7 +46,7 @@ public class HtmlUtilsTest extends AndroidTestCase {
      */
     public void testToggleRemoved() {
         String html = "before <span class=\"email-hidden-toggle\"><a href=\"#\">…</a></span>after";
-        assertEquals("before after", format(html));
+        assertEquals("before after", encode(html));
     }
 
     /**
@@ -46,184 +54,174 @@ public class HtmlUtilsTest extends AndroidTestCase {
      */
     public void testTogglesRemoved() {
         String html = "before <span class=\"email-hidden-toggle\"><a href=\"#\">…</a></span>after<span class=\"email-hidden-toggle\"><a href=\"#\">…</a></span>";
-        assertEquals("before after", format(html));
+        assertEquals("before after", encode(html));
     }
 
     /**
-     * Email div is transformed into block quote
+     * Email div is rendered as a block quote
      */
     public void testEmailQuoted() {
-        String html = "before <div class=\"email-quoted-reply\">quoted</div> after";
-        assertEquals("before <blockquote>quoted</blockquote> after",
-                format(html));
-    }
-
-    /**
-     * Email fragment div is removed and newlines are replaced with br tags
-     */
-    public void testEmailFragment() {
-        String html = "before <div class=\"email-fragment\">in\nside</div> after";
-        assertEquals("before in<br>side after", format(html));
+        CharSequence encoded = HtmlUtils
+                .encode("before <div class=\"email-quoted-reply\">quoted</div> after");
+        assertEquals("before \n\nquoted\n\nafter", encoded.toString());
+        assertEquals(1, count(encoded, LeadingMarginSpan.class));
     }
 
     /**
-     * Email fragment div is removed and newlines are replaced with br tags
+     * Email fragment newlines are kept
      */
     public void testEmailFragments() {
         String html = "before <div class=\"email-fragment\">in\nside</div> after <div class=\"email-fragment\">out\nside</div>";
-        assertEquals("before in<br>side after out<br>side", format(html));
+        assertEquals("before in\nside after out\nside", encode(html));
     }
 
     /**
-     * Email fragment div is removed and newlines are replaced with br tags
+     * Email fragment at the end is rendered
      */
     public void testTrailingEmailFragment() {
         String html = "before <div class=\"email-fragment\">in\nside</div>";
-        assertEquals("before in<br>side", format(html));
-    }
-
-    /**
-     * Leading break is removed
-     */
-    public void testLeadingBreak() {
-        String html = "<br>content";
-        assertEquals("content", format(html));
-    }
-
-    /**
-     * Trailing break is removed
-     */
-    public void testTrailingBreak() {
-        String html = "content<br>";
-        assertEquals("content", format(html));
+        assertEquals("before in\nside", encode(html));
     }
 
     /**
      * Leading & trailing breaks are removed
      */
     public void testWrappedBreaks() {
-        String html = "<br>content<br>";
-        assertEquals("content", format(html));
+        assertEquals("content", encode("<br>content"));
+        assertEquals("content", encode("content<br>"));
+        assertEquals("content", encode("<br>content<br>"));
     }
 
     /**
-     * Leading & trailing breaks are removed
+     * Paragraph rendered as a break
      */
-    public void testWrappedParagraphs() {
-        String html = "<p>content</p>";
-        assertEquals("content", format(html));
+    public void testParagraphs() {
+        assertEquals("content", encode("<p>content</p>"));
+        assertEquals("line1\nline2", encode("line1<p>line2</p>"));
     }
 
     /**
-     * Paragraph replaced with break
+     * em and strong tags are styled
      */
-    public void testParagraphReplacedWithBreak() {
-        String html = "line1<p>line2</p>";
-        assertEquals("line1<br>line2", format(html));
+    public void testEmAndStrong() {
+        CharSequence encoded = HtmlUtils.encode("a<em>b</em><strong>c</strong>");
+        assertEquals("abc", encoded.toString());
+        StyleSpan[] styles = ((Spanned) encoded).getSpans(0,
+                encoded.length(), StyleSpan.class);
+        assertEquals(2, styles.length);
+        assertEquals(BOLD | ITALIC,
+                styles[0].getStyle() | styles[1].getStyle());
     }
 
     /**
-     * em tags replaced with i tags
+     * Leading & trailing whitespace is removed
      */
-    public void testEmReplacedWithI() {
-        String html = "a<em>b</em>c";
-        if (SDK_INT < ICE_CREAM_SANDWICH)
-            assertEquals("a<i>b</i>c", format(html));
-        else
-            assertEquals(html, format(html));
+    public void testWrappedWhitespace() {
+        assertEquals("content", encode(" content"));
+        assertEquals("content", encode("content "));
+        assertEquals("content", encode(" content "));
     }
 
     /**
-     * strong tags replaced with b tags
+     * Pre without whitespace is only set on its own line
      */
-    public void testStrongReplacedWithB() {
-        String html = "<strong>a</strong>";
-        if (SDK_INT < ICE_CREAM_SANDWICH)
-            assertEquals("<b>a</b>", format(html));
-        else
-            assertEquals(html, format(html));
+    public void testPreWithNoWhitespace() {
+        assertEquals("a\nb\nc", encode("a<pre>b</pre> c"));
     }
 
     /**
-     * Leading whitespace is removed
+     * Pre spaces, tabs and newlines are kept
      */
-    public void testLeadingWhitespace() {
-        String html = " content";
-        assertEquals("content", format(html));
+    public void testPreWhitespace() {
+        assertEquals("a\n\u00a0b\nc", encode("a<pre> b</pre> c"));
+        assertEquals("a\n\u00a0\u00a0\u00a0\u00a0b\nc",
+                encode("a<pre>\tb</pre> c"));
+        assertEquals("a\n\nb\nc", encode("a<pre>\nb</pre> c"));
+        assertEquals("a\n\nb\u00a0\u00a0\u00a0\u00a0c\u00a0\nd",
+                encode("a<pre>\nb\tc </pre>d"));
     }
 
     /**
-     * Trailing whitespace is removed
+     * Multiple pre elements are rendered
      */
-    public void testTrailingWhitespace() {
-        String html = "content ";
-        assertEquals("content", format(html));
+    public void testMultiplePres() {
+        assertEquals(
+                "a\n\u00a0c\u00a0\nd\n\u00a0\u00a0\u00a0\u00a0e\u00a0\u00a0\u00a0\u00a0",
+                encode("a<pre> c </pre>d<pre>\te\t</pre>"));
     }
 
     /**
-     * Leading & trailing whitespace is removed
+     * Single code element inside a pre element
      */
-    public void testWrappedWhitetspace() {
-        String html = " content ";
-        assertEquals("content", format(html));
+    public void testPreCodeOnly() {
+        CharSequence encoded = HtmlUtils
+                .encode("<pre><code>a\nb\nc\n</code></pre>");
+        assertEquals("a\nb\nc", encoded.toString());
+        assertEquals(2, count(encoded, TypefaceSpan.class));
     }
 
     /**
-     * Pre untouched
+     * Email toggles, signatures, and hidden replies are not rendered
      */
-    public void testPreWithNoWhitespace() {
-        String html = "a<pre>b</pre> c";
-        assertEquals("a<pre>b</pre> c", format(html));
+    public void testEncodeHiddenEmailContent() {
+        String html = "a <span class=\"email-hidden-toggle\"><a href=\"#\">…</a></span>b"
+                + "<div class=\"email-signature-reply\">sig</div>"
+                + "<div class=\"email-hidden-reply\" style=\" display:none\"><div>x</div>y</div>";
+        assertEquals("a b", encode(html));
     }
 
     /**
-     * Pre space escaped
+     * Email fragment newlines are rendered as line breaks
      */
-    public void testPreWithSpaces() {
-        String html = "a<pre> b</pre> c";
-        assertEquals("a<pre>&nbsp;b</pre> c", format(html));
+    public void testEncodeEmailFragment() {
+        String html = "<div class=\"email-fragment\">in\nside</div>";
+        assertEquals("in\nside", encode(html));
     }
 
     /**
-     * Pre tab escaped
+     * Paragraphs are rendered as breaks and the result is trimmed
      */
-    public void testPreWithTabs() {
-        String html = "a<pre>\tb</pre> c";
-        assertEquals("a<pre>&nbsp;&nbsp;&nbsp;&nbsp;b</pre> c", format(html));
+    public void testEncodeParagraphs() {
+        assertEquals("line1\nline2", encode("<p>line1<p>line2</p>\n"));
     }
 
     /**
-     * Pre newline escaped
+     * Pre whitespace is preserved and styled as monospace
      */
-    public void testPreWithNewline() {
-        String html = "a<pre>\nb</pre> c";
-        assertEquals("a<pre><br>b</pre> c", format(html));
+    public void testEncodePre() {
+        CharSequence encoded = HtmlUtils
+                .encode("a<pre><code>\tb c\n</code></pre>");
+        assertEquals("a\n\u00a0\u00a0\u00a0\u00a0b\u00a0c",
+                encoded.toString());
+        assertEquals(2, ((Spanned) encoded).getSpans(0, encoded.length(),
+                TypefaceSpan.class).length);
     }
 
     /**
-     * Pre space, tab, and newline escaped
+     * Lists are rendered with bullets and numbers
      */
-    public void testPreWithAllWhitepsace() {
-        String html = "a<pre>\nb\tc </pre>d";
-        assertEquals("a<pre><br>b&nbsp;&nbsp;&nbsp;&nbsp;c&nbsp;</pre>d",
-                format(html));
+    public void testEncodeLists() {
+        assertEquals("  \u2022  a\n  \u2022  b",
+                encode("<ul><li>a</li><li>b</li></ul>"));
+        assertEquals("  1.  a\n  2.  b",
+                encode("<ol><li>a</li><li>b</li></ol>"));
     }
 
     /**
-     * Multiple pre elements escaped
+     * Entities are decoded and del is struck through
      */
-    public void testMultiplePresEscaped() {
-        String html = "a<pre> c </pre>d<pre>\te\t</pre>";
-        assertEquals(
-                "a<pre>&nbsp;c&nbsp;</pre>d<pre>&nbsp;&nbsp;&nbsp;&nbsp;e&nbsp;&nbsp;&nbsp;&nbsp;</pre>",
-                format(html));
+    public void testEncodeEntitiesAndDel() {
+        CharSequence encoded = HtmlUtils.encode("<del>a &amp; b &#60;</del>");
+        assertEquals("a & b <", encoded.toString());
+        assertEquals(1, ((Spanned) encoded).getSpans(0, encoded.length(),
+                StrikethroughSpan.class).length);
     }
 
     /**
-     * Single code element inside a pre element
+     * Numeric entities outside the basic multilingual plane are decoded
      */
-    public void testFormatPreCodeOnly() {
-        String html = "<pre><code>a\nb\nc\n</code></pre>";
-        assertEquals("<pre><code>a<br>b<br>c</code></pre>", format(html));
+    public void testEncodeSupplementaryEntity() {
+        assertEquals("a \ud83d\ude00", encode("a &#x1F600;"));
+        assertEquals("a \ud83d\ude00", encode("a &#128512;"));
     }
 }